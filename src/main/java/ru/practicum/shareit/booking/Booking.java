@@ -30,6 +30,8 @@ public class Booking {
     private User booker;
     @Enumerated(EnumType.STRING)
     private Status status;
+    @Version
+    private Long version;
 
     @Override
     public boolean equals(Object o) {
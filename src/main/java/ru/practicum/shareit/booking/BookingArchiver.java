@@ -0,0 +1,64 @@
+package ru.practicum.shareit.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переносит бронирования, закончившиеся раньше горизонта архивации, из booking в booking_archive.
+ * Перенос идёт пачками, каждая в своей транзакции. Бронирования, на которые ссылается
+ * предмет как на последнее, остаются в рабочей таблице. Списки, в которые могут попасть
+ * закончившиеся бронирования (ALL, PAST, WAITING, REJECTED), читаются из представления booking_history.
+ */
+@Slf4j
+@Component
+public class BookingArchiver {
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration horizon;
+    private final int batchSize;
+
+    public BookingArchiver(BookingRepository bookingRepository,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${shareit.booking.archive.horizon:365d}") Duration horizon,
+                           @Value("${shareit.booking.archive.batch-size:1000}") int batchSize) {
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${shareit.booking.archive.interval-minutes:60}",
+            fixedDelayString = "${shareit.booking.archive.interval-minutes:60}",
+            timeUnit = TimeUnit.MINUTES)
+    public void archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(horizon);
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += moved;
+        } while (moved == batchSize);
+        if (total > 0) {
+            log.info("В архив перенесено {} бронирований, закончившихся до {}", total, cutoff);
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = bookingRepository.findArchivableIds(cutoff, Limit.of(batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        bookingRepository.copyToArchive(ids);
+        bookingRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+}
@@ -3,11 +3,20 @@ package ru.practicum.shareit.booking;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoResponse;
 import ru.practicum.shareit.booking.enums.State;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -15,15 +24,21 @@ import java.util.List;
 @RequiredArgsConstructor
 @RequestMapping("/bookings")
 public class BookingController {
+    private static final String NDJSON = "application/x-ndjson";
+
     private final BookingService bookingService;
+    private final IdempotencyStore idempotencyStore;
 
     @PostMapping
     public BookingDtoResponse book(@RequestBody @Valid BookingDto bookingDto,
-                                   @RequestHeader("X-Sharer-User-Id") long userId) {
+                                   @RequestHeader("X-Sharer-User-Id") long userId,
+                                   @RequestHeader(value = IdempotencyStore.HEADER, required = false)
+                                   String idempotencyKey) {
         bookingDto.setBookerId(userId);
         log.info("Получен запрос на бронирование предмета ID: {} пользователем " +
                 "с ID {} ", bookingDto.getItemId(), userId);
-        return bookingService.book(bookingDto);
+        return idempotencyStore.execute("booking", userId, idempotencyKey, bookingDto, BookingDtoResponse.class,
+                () -> bookingService.book(bookingDto));
     }
 
     @PatchMapping("/{bookingId}")
@@ -34,6 +49,14 @@ public class BookingController {
         return bookingService.approve(bookingId, userId, approved);
     }
 
+    @PatchMapping("/approve")
+    public List<BookingDecisionResultDto> approveAll(@RequestBody List<BookingDecisionDto> decisions,
+                                                     @RequestHeader("X-Sharer-User-Id") long userId) {
+        log.info("Получен запрос на пакетное подтверждение {} бронирований пользователем ID {}",
+                decisions.size(), userId);
+        return bookingService.approveAll(userId, decisions);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDtoResponse getBookingById(@PathVariable long bookingId,
                                  @RequestHeader("X-Sharer-User-Id") long userId)  {
@@ -43,15 +66,47 @@ public class BookingController {
 
     @GetMapping
     public List<BookingDtoResponse> getBookings(@RequestParam(required = false, defaultValue = "ALL") State state,
-                                        @RequestHeader("X-Sharer-User-Id") long userId) {
+                                        @RequestHeader("X-Sharer-User-Id") long userId,
+                                        @RequestParam(defaultValue = "0") int from,
+                                        @RequestParam(defaultValue = "20") int size) {
         log.info("Получен запрос на список бронирований пользователя ID: {}", userId);
-        return bookingService.getBookings(userId, state);
+        return bookingService.getBookings(userId, state, from, size);
     }
 
     @GetMapping("/owner")
     public List<BookingDtoResponse> getCurrentUserBookings(@RequestHeader("X-Sharer-User-Id") long userId,
-                                                   @RequestParam(required = false, defaultValue = "ALL") State state) {
+                                                   @RequestParam(required = false, defaultValue = "ALL") State state,
+                                                   @RequestParam(defaultValue = "0") int from,
+                                                   @RequestParam(defaultValue = "20") int size) {
         log.info("Получен запрос на список бронирования вещей пользователя ID {}", userId);
-        return bookingService.getCurrentUserBookings(userId, state);
+        return bookingService.getCurrentUserBookings(userId, state, from, size);
+    }
+
+    @GetMapping(value = "/owner/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCurrentUserBookings(@RequestHeader("X-Sharer-User-Id") long userId) {
+        log.info("Получен запрос на подписку на события бронирований вещей пользователя ID {}", userId);
+        return bookingService.subscribe(userId);
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestHeader("X-Sharer-User-Id") long userId,
+            @RequestParam(required = false, defaultValue = "ALL") State state,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        log.info("Получен запрос на выгрузку бронирований пользователя ID: {}", userId);
+        BookingExportFilter filter = bookingService.prepareExport(userId, false, state, start, end);
+        return ResponseEntity.ok(outputStream -> bookingService.exportBookings(filter, outputStream));
+    }
+
+    @GetMapping(value = "/owner/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportCurrentUserBookings(
+            @RequestHeader("X-Sharer-User-Id") long userId,
+            @RequestParam(required = false, defaultValue = "ALL") State state,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        log.info("Получен запрос на выгрузку бронирований вещей пользователя ID: {}", userId);
+        BookingExportFilter filter = bookingService.prepareExport(userId, true, state, start, end);
+        return ResponseEntity.ok(outputStream -> bookingService.exportBookings(filter, outputStream));
     }
 }
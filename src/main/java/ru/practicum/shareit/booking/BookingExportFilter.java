@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.booking.enums.State;
+
+import java.time.LocalDateTime;
+
+public record BookingExportFilter(Long bookerId,
+                                  Long ownerId,
+                                  State state,
+                                  LocalDateTime rangeStart,
+                                  LocalDateTime rangeEnd,
+                                  boolean includeArchive) {
+}
@@ -0,0 +1,9 @@
+package ru.practicum.shareit.booking;
+
+import java.util.stream.Stream;
+
+public interface BookingExportRepository {
+
+    Stream<Booking> streamBookings(BookingExportFilter filter);
+
+}
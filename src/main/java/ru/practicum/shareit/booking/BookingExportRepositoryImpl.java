@@ -0,0 +1,73 @@
+package ru.practicum.shareit.booking;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import ru.practicum.shareit.booking.enums.Status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class BookingExportRepositoryImpl implements BookingExportRepository {
+    private static final int FETCH_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Stream<Booking> streamBookings(BookingExportFilter filter) {
+        if (filter.includeArchive()) {
+            return streamBookings(filter, BookingHistory.class).map(BookingHistory::toBooking);
+        }
+        return streamBookings(filter, Booking.class);
+    }
+
+    private <T> Stream<T> streamBookings(BookingExportFilter filter, Class<T> type) {
+        LocalDateTime now = LocalDateTime.now();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> booking = query.from(type);
+        booking.fetch("item");
+        booking.fetch("booker");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.bookerId() != null) {
+            predicates.add(cb.equal(booking.get("booker").get("id"), filter.bookerId()));
+        }
+        if (filter.ownerId() != null) {
+            predicates.add(cb.equal(booking.get("item").get("owner").get("id"), filter.ownerId()));
+        }
+        if (filter.rangeStart() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(booking.get("start"), filter.rangeStart()));
+        }
+        if (filter.rangeEnd() != null) {
+            predicates.add(cb.lessThan(booking.get("start"), filter.rangeEnd()));
+        }
+        switch (filter.state()) {
+            case ALL -> {
+            }
+            case CURRENT -> {
+                predicates.add(cb.lessThan(booking.get("start"), now));
+                predicates.add(cb.greaterThan(booking.get("end"), now));
+            }
+            case PAST -> predicates.add(cb.lessThan(booking.get("end"), now));
+            case FUTURE -> predicates.add(cb.greaterThan(booking.get("start"), now));
+            case WAITING -> predicates.add(cb.equal(booking.get("status"), Status.WAITING));
+            case REJECTED -> predicates.add(cb.equal(booking.get("status"), Status.REJECTED));
+        }
+
+        query.select(booking)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(booking.get("start")), cb.asc(booking.get("id")));
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.enums.Status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookingHistoryRepository extends JpaRepository<BookingHistory, Long> {
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM booking_archive a WHERE a.booker_id = :bookerId)",
+            nativeQuery = true)
+    boolean hasArchivedBookingsOfBooker(@Param("bookerId") long bookerId);
+
+    @Query(value = """
+            SELECT EXISTS (
+                SELECT 1 FROM booking_archive a
+                JOIN items i ON i.id = a.item_id
+                WHERE i.owner_id = :ownerId
+            )
+            """, nativeQuery = true)
+    boolean hasArchivedBookingsOfOwner(@Param("ownerId") long ownerId);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    Optional<BookingHistory> findWithDetailsById(long bookingId);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByBooker_Id(long bookerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByBooker_IdAndEndBefore(long bookerId, LocalDateTime end, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByBooker_IdAndStatus(long bookerId, Status status, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByItem_Owner_Id(long ownerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByItem_Owner_IdAndEndBefore(long ownerId, LocalDateTime end, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<BookingHistory> findByItem_Owner_IdAndStatus(long ownerId, Status status, Pageable pageable);
+
+    boolean existsByItem_IdAndBooker_IdAndEndBefore(Long itemId, Long userId, LocalDateTime now);
+}
@@ -0,0 +1,197 @@
+package ru.practicum.shareit.booking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.enums.Status;
+import ru.practicum.shareit.item.ItemLocks;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Индекс активных (WAITING и APPROVED) бронирований по предметам.
+ * Интервалы предмета подгружаются из БД при первом обращении; проверки и изменения
+ * выполняются только под блокировкой предмета, см. {@link #withItemLock(long, Supplier)}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookingIntervalIndex {
+    public static final List<Status> ACTIVE_STATUSES = List.of(Status.WAITING, Status.APPROVED);
+
+    private final BookingRepository bookingRepository;
+    private final ItemLocks itemLocks;
+    private final Map<Long, ItemTimeline> timelines = new ConcurrentHashMap<>();
+
+    public static boolean isActive(Status status) {
+        return ACTIVE_STATUSES.contains(status);
+    }
+
+    public <T> T withItemLock(long itemId, Supplier<T> action) {
+        return itemLocks.withLock(itemId, () -> {
+            ensureLoaded(itemId);
+            return action.get();
+        });
+    }
+
+    public <T> T withItemLocks(Collection<Long> itemIds, Supplier<T> action) {
+        return itemLocks.withLocks(itemIds, () -> {
+            itemIds.forEach(this::ensureLoaded);
+            return action.get();
+        });
+    }
+
+    public boolean hasConflict(long itemId, LocalDateTime start, LocalDateTime end, long excludedBookingId) {
+        return lockedTimeline(itemId).hasConflict(start, end, excludedBookingId);
+    }
+
+    public void add(Booking booking) {
+        lockedTimeline(booking.getItem().getId()).add(booking.getId(), booking.getStart(), booking.getEnd());
+    }
+
+    public void remove(Booking booking) {
+        lockedTimeline(booking.getItem().getId()).remove(booking.getId());
+    }
+
+    /**
+     * Выполняет удаление бронирований под блокировками их предметов и убирает их из индекса.
+     * Интервалы ещё не загруженных предметов не подгружаются: удалённые бронирования в них уже не попадут.
+     */
+    public void removeDeleted(Collection<Booking> bookings, Runnable deletion) {
+        Set<Long> itemIds = new HashSet<>();
+        bookings.forEach(booking -> itemIds.add(booking.getItem().getId()));
+        itemLocks.withLocks(itemIds, () -> {
+            deletion.run();
+            for (Booking booking : bookings) {
+                ItemTimeline timeline = timelines.get(booking.getItem().getId());
+                if (timeline != null) {
+                    timeline.remove(booking.getId());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Убирает из индекса интервалы предметов, у которых не осталось активных бронирований,
+     * чтобы индекс не рос вместе с числом когда-либо забронированных предметов.
+     * При следующем обращении интервалы предмета снова подгрузятся из БД.
+     */
+    @Scheduled(fixedDelayString = "${shareit.booking.interval-index.sweep-interval-minutes:10}",
+            timeUnit = TimeUnit.MINUTES)
+    public void evictIdle() {
+        int evicted = 0;
+        for (Long itemId : List.copyOf(timelines.keySet())) {
+            boolean removed = itemLocks.withLock(itemId, () -> {
+                ItemTimeline timeline = timelines.get(itemId);
+                if (timeline != null && timeline.isIdle()) {
+                    timelines.remove(itemId);
+                    return true;
+                }
+                return false;
+            });
+            if (removed) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Из индекса бронирований убрано {} предметов без активных бронирований", evicted);
+        }
+    }
+
+    boolean isTracked(long itemId) {
+        return timelines.containsKey(itemId);
+    }
+
+    private void ensureLoaded(long itemId) {
+        ItemTimeline timeline = timelines.computeIfAbsent(itemId, id -> new ItemTimeline());
+        if (!timeline.loaded) {
+            LocalDateTime now = LocalDateTime.now();
+            bookingRepository.findByItem_IdAndStatusInAndEndAfter(itemId, ACTIVE_STATUSES, now)
+                    .forEach(booking -> timeline.add(booking.getId(), booking.getStart(), booking.getEnd()));
+            timeline.loaded = true;
+        }
+    }
+
+    private ItemTimeline lockedTimeline(long itemId) {
+        ItemTimeline timeline = timelines.get(itemId);
+        if (timeline == null || !itemLocks.isHeldByCurrentThread(itemId)) {
+            throw new IllegalStateException("Индекс бронирований предмета " + itemId + " не заблокирован");
+        }
+        return timeline;
+    }
+
+    /**
+     * Интервалы одного предмета, упорядоченные по началу. Активные бронирования предмета
+     * не пересекаются (пересечение отклоняется при бронировании и утверждении),
+     * поэтому упорядочены и их окончания: для проверки достаточно соседей нового интервала.
+     */
+    private static final class ItemTimeline {
+        private final NavigableMap<IntervalKey, LocalDateTime> intervals = new TreeMap<>();
+        private final Map<Long, IntervalKey> keys = new HashMap<>();
+        private boolean loaded;
+
+        boolean hasConflict(LocalDateTime start, LocalDateTime end, long excludedBookingId) {
+            prune();
+            Map.Entry<IntervalKey, LocalDateTime> before = intervals.floorEntry(new IntervalKey(start, Long.MAX_VALUE));
+            if (before != null && before.getKey().bookingId() == excludedBookingId) {
+                before = intervals.lowerEntry(before.getKey());
+            }
+            if (before != null && before.getValue().isAfter(start)) {
+                return true;
+            }
+            for (IntervalKey key : intervals.subMap(new IntervalKey(start, Long.MAX_VALUE), false,
+                    new IntervalKey(end, Long.MIN_VALUE), false).keySet()) {
+                if (key.bookingId() != excludedBookingId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(long bookingId, LocalDateTime start, LocalDateTime end) {
+            remove(bookingId);
+            IntervalKey key = new IntervalKey(start, bookingId);
+            intervals.put(key, end);
+            keys.put(bookingId, key);
+        }
+
+        void remove(long bookingId) {
+            IntervalKey key = keys.remove(bookingId);
+            if (key != null) {
+                intervals.remove(key);
+            }
+        }
+
+        boolean isIdle() {
+            prune();
+            return intervals.isEmpty();
+        }
+
+        private void prune() {
+            LocalDateTime now = LocalDateTime.now();
+            Iterator<Map.Entry<IntervalKey, LocalDateTime>> iterator = intervals.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<IntervalKey, LocalDateTime> entry = iterator.next();
+                if (entry.getValue().isAfter(now)) {
+                    break;
+                }
+                keys.remove(entry.getKey().bookingId());
+                iterator.remove();
+            }
+        }
+    }
+
+    private record IntervalKey(LocalDateTime start, long bookingId) implements Comparable<IntervalKey> {
+        @Override
+        public int compareTo(IntervalKey other) {
+            int byStart = start.compareTo(other.start);
+            return byStart != 0 ? byStart : Long.compare(bookingId, other.bookingId);
+        }
+    }
+}
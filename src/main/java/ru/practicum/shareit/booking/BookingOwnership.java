@@ -0,0 +1,4 @@
+package ru.practicum.shareit.booking;
+
+public record BookingOwnership(long bookingId, long itemId, long ownerId) {
+}
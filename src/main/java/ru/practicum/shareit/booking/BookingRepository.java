@@ -1,20 +1,135 @@
 package ru.practicum.shareit.booking;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.enums.Status;
 import ru.practicum.shareit.item.model.Item;
 
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingExportRepository {
 
-    List<Booking> findByBooker_Id(long bookerId);
+    @EntityGraph(attributePaths = {"item", "booker"})
+    Optional<Booking> findWithDetailsById(long bookingId);
 
-    List<Booking> findByItemOwnerIdOrderByStartDesc(long ownerId);
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findWithDetailsByIdIn(Collection<Long> bookingIds);
+
+    @Query("""
+            SELECT new ru.practicum.shareit.booking.BookingOwnership(b.id, i.id, i.owner.id)
+            FROM Booking b JOIN b.item i
+            WHERE b.id IN :bookingIds
+            """)
+    List<BookingOwnership> findOwnershipByIdIn(@Param("bookingIds") Collection<Long> bookingIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = :status, b.version = b.version + 1 WHERE b.id IN :bookingIds")
+    int updateStatus(@Param("bookingIds") Collection<Long> bookingIds, @Param("status") Status status);
+
+    @Query("""
+            SELECT b.id FROM Booking b
+            WHERE b.end < :cutoff
+            AND NOT EXISTS (SELECT i.id FROM Item i WHERE i.lastBooking = b)
+            ORDER BY b.id
+            """)
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO booking_archive (id, start_time, end_time, item_id, booker_id, status, version, created_at)
+            SELECT id, start_time, end_time, item_id, booker_id, status, version, created_at
+            FROM booking WHERE id IN (:bookingIds)
+            """, nativeQuery = true)
+    int copyToArchive(@Param("bookingIds") Collection<Long> bookingIds);
+
+    @Query("""
+            SELECT b FROM Booking b
+            WHERE b.booker.id = :userId
+            OR b.item.id IN (SELECT i.id FROM Item i WHERE i.owner.id = :userId)
+            ORDER BY b.id
+            """)
+    List<Booking> findInvolvingUser(@Param("userId") long userId, Limit limit);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM booking_archive WHERE id IN (
+                SELECT a.id FROM booking_archive a
+                WHERE a.booker_id = :userId
+                OR a.item_id IN (SELECT i.id FROM items i WHERE i.owner_id = :userId)
+                FETCH FIRST :limit ROWS ONLY
+            )
+            """, nativeQuery = true)
+    int deleteArchivedInvolvingUser(@Param("userId") long userId, @Param("limit") int limit);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByBooker_Id(long bookerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByBooker_IdAndStartBeforeAndEndAfter(long bookerId, LocalDateTime startBefore,
+                                                            LocalDateTime endAfter, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByBooker_IdAndEndBefore(long bookerId, LocalDateTime endBefore, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByBooker_IdAndStartAfter(long bookerId, LocalDateTime startAfter, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByBooker_IdAndStatus(long bookerId, Status status, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByItem_Owner_Id(long ownerId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByItem_Owner_IdAndStartBeforeAndEndAfter(long ownerId, LocalDateTime startBefore,
+                                                                LocalDateTime endAfter, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByItem_Owner_IdAndEndBefore(long ownerId, LocalDateTime endBefore, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByItem_Owner_IdAndStartAfter(long ownerId, LocalDateTime startAfter, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findByItem_Owner_IdAndStatus(long ownerId, Status status, Pageable pageable);
+
+    List<Booking> findByItem_IdAndStatusInAndEndAfter(long itemId, Collection<Status> statuses,
+                                                      LocalDateTime currentTime);
+
+    @Query("""
+            SELECT b FROM Booking b
+            WHERE b.item.id = :itemId
+            AND b.status IN :statuses
+            AND b.start < :to
+            AND b.end > :from
+            ORDER BY b.start ASC
+            """)
+    List<Booking> findItemBookingsInRange(
+            @Param("itemId") long itemId,
+            @Param("statuses") Collection<Status> statuses,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    @Query("""
+            SELECT DISTINCT b.item.id FROM Booking b
+            WHERE b.item.id IN :itemIds
+            AND b.status = 'APPROVED'
+            AND b.start < :end
+            AND b.end > :start
+            """)
+    List<Long> findBookedItemIds(
+            @Param("itemIds") Collection<Long> itemIds,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
 
     boolean existsByItem_IdAndBooker_IdAndEndBefore(Long itemId, Long userId, LocalDateTime now);
 
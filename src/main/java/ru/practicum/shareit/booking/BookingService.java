@@ -1,9 +1,15 @@
 package ru.practicum.shareit.booking;
 
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoResponse;
 import ru.practicum.shareit.booking.enums.State;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface BookingService {
@@ -12,10 +18,19 @@ public interface BookingService {
 
     BookingDtoResponse approve(long bookingId, long userId, boolean approved);
 
+    List<BookingDecisionResultDto> approveAll(long userId, List<BookingDecisionDto> decisions);
+
     BookingDtoResponse getBookingById(long bookingId, long userId);
 
-    List<BookingDtoResponse> getBookings(long userId, State state);
+    List<BookingDtoResponse> getBookings(long userId, State state, int from, int size);
+
+    List<BookingDtoResponse> getCurrentUserBookings(long userId, State state, int from, int size);
+
+    SseEmitter subscribe(long userId);
+
+    BookingExportFilter prepareExport(long userId, boolean asOwner, State state,
+                                      LocalDateTime rangeStart, LocalDateTime rangeEnd);
 
-    List<BookingDtoResponse> getCurrentUserBookings(long userId, State state);
+    void exportBookings(BookingExportFilter filter, OutputStream outputStream) throws IOException;
 
 }
@@ -1,37 +1,76 @@
 package ru.practicum.shareit.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoResponse;
 import ru.practicum.shareit.booking.enums.State;
+import ru.practicum.shareit.booking.event.BookingEventBus;
+import ru.practicum.shareit.booking.event.BookingEventType;
 import ru.practicum.shareit.booking.enums.Status;
+import ru.practicum.shareit.cache.ReferenceCache;
 import ru.practicum.shareit.exception.*;
+import ru.practicum.shareit.item.ItemAvailabilityCache;
 import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.search.ItemSearchCache;
 import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.user.UserDirectory;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.OffsetPageRequest;
+import ru.practicum.shareit.util.OptimisticRetry;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BookingServiceImpl implements BookingService {
+    private static final Sort BOOKING_ORDER = Sort.by("start", "id");
+    private static final int EXPORT_FLUSH_SIZE = 500;
+    private static final int MAX_DECISIONS = 1000;
+
     private final BookingRepository bookingRepository;
+    private final BookingHistoryRepository historyRepository;
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
+    private final ReferenceCache referenceCache;
+    private final UserDirectory userDirectory;
+    private final BookingIntervalIndex intervalIndex;
+    private final ItemAvailabilityCache availabilityCache;
+    private final ItemSearchCache searchCache;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final BookingEventBus eventBus;
+    private final OptimisticRetry optimisticRetry;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public BookingDtoResponse book(BookingDto bookingDto) {
-        User booker = userRepository.findById(bookingDto.getBookerId())
+        User booker = referenceCache.findUser(bookingDto.getBookerId())
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        Item item = itemRepository.findById(bookingDto.getItemId())
+        Item item = referenceCache.findItem(bookingDto.getItemId())
                 .orElseThrow(() -> new NotFoundException("Предмет не найден"));
         LocalDateTime now = LocalDateTime.now();
         if (bookingDto.getStart().isBefore(now)) {
@@ -52,30 +91,218 @@ public class BookingServiceImpl implements BookingService {
         booking.setEnd(bookingDto.getEnd());
         booking.setStatus(Status.WAITING);
         booking.setBooker(booker);
+        return intervalIndex.withItemLock(item.getId(), () -> {
+            if (intervalIndex.hasConflict(item.getId(), booking.getStart(), booking.getEnd(), booking.getId())) {
+                throw new BookingConflictException(String.format(
+                        "Предмет с ID %d уже забронирован на выбранное время", item.getId()));
+            }
+            Booking result = transactionTemplate.execute(status -> saveBooking(booking, item.getId()));
+            intervalIndex.add(result);
+            availabilityCache.invalidate(item.getId());
+            BookingDtoResponse response = toBookingDtoResponse(result);
+            eventBus.publish(item.getOwner().getId(), BookingEventType.CREATED, response);
+            return response;
+        });
+    }
+
+    /**
+     * Сохраняет бронирование, заново проверяя предмет в той же транзакции:
+     * кэшированная копия могла устареть, а проверка выполняется под блокировкой предмета.
+     */
+    private Booking saveBooking(Booking booking, long itemId) {
+        Item item = itemRepository.findById(itemId)
+                .orElseThrow(() -> new NotFoundException("Предмет не найден"));
+        if (!item.isAvailable()) {
+            throw new UnavailableItemException(
+                    String.format("Предмет %s с ID %d не доступен для бронирования", item.getName(), item.getId()));
+        }
         booking.setItem(item);
-        Booking result = bookingRepository.save(booking);
-        return toBookingDtoResponse(result);
+        return bookingRepository.save(booking);
     }
 
     public BookingDtoResponse approve(long bookingId, long userId, boolean approved) {
-        Booking booking = bookingRepository.findById(bookingId)
+        BookingOwnership ownership = bookingRepository.findOwnershipByIdIn(List.of(bookingId)).stream()
+                .findFirst()
                 .orElseThrow(() -> new NotFoundException("Бронирование не найдено"));
-        User owner = booking.getItem().getOwner();
-        if (owner.getId() != userId) {
+        if (ownership.ownerId() != userId) {
             throw new ForbiddenUserException(String.format("Пользователь с ID %d не может утверждать " +
                     "бронирование с ID %d", userId, bookingId));
         }
+        long itemId = ownership.itemId();
+        return intervalIndex.withItemLock(itemId, () -> {
+            StatusChange change = optimisticRetry.execute(() -> applyDecision(bookingId, approved));
+            Booking result = change.booking();
+            if (approved && !change.wasActive()) {
+                intervalIndex.add(result);
+            } else if (!approved && change.wasActive()) {
+                intervalIndex.remove(result);
+            }
+            availabilityCache.invalidate(itemId);
+            if (change.wasApproved() != approved) {
+                searchCache.invalidateTimeWindows();
+            }
+            BookingDtoResponse response = toBookingDtoResponse(result);
+            eventBus.publish(userId, approved ? BookingEventType.APPROVED : BookingEventType.REJECTED,
+                    response);
+            return response;
+        });
+    }
+
+    private StatusChange applyDecision(long bookingId, boolean approved) {
+        Booking booking = bookingRepository.findWithDetailsById(bookingId)
+                .orElseThrow(() -> new NotFoundException("Бронирование не найдено"));
+        boolean wasActive = BookingIntervalIndex.isActive(booking.getStatus());
+        boolean wasApproved = booking.getStatus() == Status.APPROVED;
         if (approved) {
+            if (intervalIndex.hasConflict(booking.getItem().getId(), booking.getStart(), booking.getEnd(),
+                    booking.getId())) {
+                throw new BookingConflictException(String.format(
+                        "Бронирование с ID %d пересекается с другим бронированием предмета", bookingId));
+            }
             booking.setStatus(Status.APPROVED);
         } else {
             booking.setStatus(Status.REJECTED);
         }
-        Booking result = bookingRepository.save(booking);
-        return toBookingDtoResponse(result);
+        Booking result = bookingRepository.saveAndFlush(booking);
+        if (wasApproved != approved) {
+            itemRepository.refreshBookingPointers(List.of(result.getItem().getId()), LocalDateTime.now());
+        }
+        return new StatusChange(result, wasActive, wasApproved);
+    }
+
+    @Override
+    public List<BookingDecisionResultDto> approveAll(long userId, List<BookingDecisionDto> decisions) {
+        if (decisions.size() > MAX_DECISIONS) {
+            throw new BadRequestException("Нельзя обработать больше " + MAX_DECISIONS + " бронирований за один запрос");
+        }
+        checkUserExists(userId);
+        List<BookingDecisionResultDto> results = new ArrayList<>(decisions.size());
+        Map<Long, BookingDecisionResultDto> pending = new LinkedHashMap<>();
+        Map<Long, Boolean> approvals = new HashMap<>();
+        for (BookingDecisionDto decision : decisions) {
+            Long bookingId = decision.getBookingId();
+            BookingDecisionResultDto result = new BookingDecisionResultDto(bookingId == null ? 0 : bookingId, null, null);
+            results.add(result);
+            if (bookingId == null || decision.getApproved() == null) {
+                result.setError("Не указаны идентификатор бронирования или решение");
+            } else if (pending.putIfAbsent(bookingId, result) != null) {
+                result.setError("Бронирование с ID " + bookingId + " указано в запросе повторно");
+            } else {
+                approvals.put(bookingId, decision.getApproved());
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+        Map<Long, BookingOwnership> ownership = bookingRepository.findOwnershipByIdIn(pending.keySet()).stream()
+                .collect(Collectors.toMap(BookingOwnership::bookingId, Function.identity()));
+        Set<Long> itemIds = new HashSet<>();
+        Iterator<Map.Entry<Long, BookingDecisionResultDto>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, BookingDecisionResultDto> entry = iterator.next();
+            BookingOwnership owner = ownership.get(entry.getKey());
+            if (owner == null) {
+                entry.getValue().setError("Бронирование не найдено");
+                iterator.remove();
+            } else if (owner.ownerId() != userId) {
+                entry.getValue().setError(String.format("Пользователь с ID %d не может утверждать " +
+                        "бронирование с ID %d", userId, entry.getKey()));
+                iterator.remove();
+            } else {
+                itemIds.add(owner.itemId());
+            }
+        }
+        if (!pending.isEmpty()) {
+            intervalIndex.withItemLocks(itemIds, () -> applyDecisions(pending, approvals));
+        }
+        return results;
+    }
+
+    private boolean applyDecisions(Map<Long, BookingDecisionResultDto> pending, Map<Long, Boolean> approvals) {
+        List<Runnable> undo = new ArrayList<>();
+        List<Booking> changed = new ArrayList<>();
+        List<Long> approvalChanges = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Booking> bookings = bookingRepository.findWithDetailsByIdIn(pending.keySet()).stream()
+                        .collect(Collectors.toMap(Booking::getId, Function.identity()));
+                List<Long> approvedIds = new ArrayList<>();
+                List<Long> rejectedIds = new ArrayList<>();
+                for (Map.Entry<Long, BookingDecisionResultDto> entry : pending.entrySet()) {
+                    Booking booking = bookings.get(entry.getKey());
+                    if (booking == null) {
+                        entry.getValue().setError("Бронирование не найдено");
+                        continue;
+                    }
+                    boolean approved = approvals.get(entry.getKey());
+                    Status target = approved ? Status.APPROVED : Status.REJECTED;
+                    if (booking.getStatus() == target) {
+                        continue;
+                    }
+                    boolean wasActive = BookingIntervalIndex.isActive(booking.getStatus());
+                    if (approved) {
+                        if (intervalIndex.hasConflict(booking.getItem().getId(), booking.getStart(),
+                                booking.getEnd(), booking.getId())) {
+                            entry.getValue().setError(String.format(
+                                    "Бронирование с ID %d пересекается с другим бронированием предмета",
+                                    booking.getId()));
+                            continue;
+                        }
+                        if (!wasActive) {
+                            intervalIndex.add(booking);
+                            undo.add(() -> intervalIndex.remove(booking));
+                        }
+                        approvedIds.add(booking.getId());
+                    } else {
+                        if (wasActive) {
+                            intervalIndex.remove(booking);
+                            undo.add(() -> intervalIndex.add(booking));
+                        }
+                        rejectedIds.add(booking.getId());
+                    }
+                    changed.add(booking);
+                    if (approved || booking.getStatus() == Status.APPROVED) {
+                        approvalChanges.add(booking.getItem().getId());
+                    }
+                }
+                if (!approvedIds.isEmpty()) {
+                    bookingRepository.updateStatus(approvedIds, Status.APPROVED);
+                }
+                if (!rejectedIds.isEmpty()) {
+                    bookingRepository.updateStatus(rejectedIds, Status.REJECTED);
+                }
+                if (!approvalChanges.isEmpty()) {
+                    itemRepository.refreshBookingPointers(new HashSet<>(approvalChanges), LocalDateTime.now());
+                }
+                for (Map.Entry<Long, BookingDecisionResultDto> entry : pending.entrySet()) {
+                    if (entry.getValue().getError() == null) {
+                        Booking booking = bookings.get(entry.getKey());
+                        booking.setStatus(approvals.get(entry.getKey()) ? Status.APPROVED : Status.REJECTED);
+                        entry.getValue().setBooking(toBookingDtoResponse(booking));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                undo.get(i).run();
+            }
+            throw e;
+        }
+        for (Booking booking : changed) {
+            availabilityCache.invalidate(booking.getItem().getId());
+            eventBus.publish(booking.getItem().getOwner().getId(),
+                    booking.getStatus() == Status.APPROVED ? BookingEventType.APPROVED : BookingEventType.REJECTED,
+                    pending.get(booking.getId()).getBooking());
+        }
+        if (!approvalChanges.isEmpty()) {
+            searchCache.invalidateTimeWindows();
+        }
+        return !changed.isEmpty();
     }
 
     public BookingDtoResponse getBookingById(long bookingId, long userId) {
-        Booking booking = bookingRepository.findById(bookingId)
+        Booking booking = bookingRepository.findWithDetailsById(bookingId)
+                .or(() -> historyRepository.findWithDetailsById(bookingId).map(BookingHistory::toBooking))
                 .orElseThrow(() -> new NotFoundException("Бронирование не найдено"));
         long ownerId = booking.getItem().getOwner().getId();
         long bookerId = booking.getBooker().getId();
@@ -85,35 +312,101 @@ public class BookingServiceImpl implements BookingService {
         throw new ForbiddenUserException("Этот пользователь не может просматривать запрашиваемое бронирование");
     }
 
-    public List<BookingDtoResponse> getBookings(long userId, State state) {
+    public List<BookingDtoResponse> getBookings(long userId, State state, int from, int size) {
+        OffsetPageRequest page = OffsetPageRequest.of(from, size, BOOKING_ORDER);
         checkUserExists(userId);
-        List<Booking> bookings = bookingRepository.findByBooker_Id(userId);
-        return filterState(bookings, state);
+        LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = switch (state) {
+            case ALL -> historyRepository.hasArchivedBookingsOfBooker(userId)
+                    ? fromHistory(historyRepository.findByBooker_Id(userId, page))
+                    : bookingRepository.findByBooker_Id(userId, page);
+            case CURRENT -> bookingRepository.findByBooker_IdAndStartBeforeAndEndAfter(userId, now, now, page);
+            case PAST -> historyRepository.hasArchivedBookingsOfBooker(userId)
+                    ? fromHistory(historyRepository.findByBooker_IdAndEndBefore(userId, now, page))
+                    : bookingRepository.findByBooker_IdAndEndBefore(userId, now, page);
+            case FUTURE -> bookingRepository.findByBooker_IdAndStartAfter(userId, now, page);
+            case WAITING -> historyRepository.hasArchivedBookingsOfBooker(userId)
+                    ? fromHistory(historyRepository.findByBooker_IdAndStatus(userId, Status.WAITING, page))
+                    : bookingRepository.findByBooker_IdAndStatus(userId, Status.WAITING, page);
+            case REJECTED -> historyRepository.hasArchivedBookingsOfBooker(userId)
+                    ? fromHistory(historyRepository.findByBooker_IdAndStatus(userId, Status.REJECTED, page))
+                    : bookingRepository.findByBooker_IdAndStatus(userId, Status.REJECTED, page);
+        };
+        return toBookingDtoResponses(bookings);
     }
 
-    public List<BookingDtoResponse> getCurrentUserBookings(long userId, State state) {
+    public List<BookingDtoResponse> getCurrentUserBookings(long userId, State state, int from, int size) {
+        OffsetPageRequest page = OffsetPageRequest.of(from, size, BOOKING_ORDER);
         checkUserExists(userId);
-        List<Booking> bookings = bookingRepository.findByItemOwnerIdOrderByStartDesc(userId);
-        return filterState(bookings, state);
+        LocalDateTime now = LocalDateTime.now();
+        List<Booking> bookings = switch (state) {
+            case ALL -> historyRepository.hasArchivedBookingsOfOwner(userId)
+                    ? fromHistory(historyRepository.findByItem_Owner_Id(userId, page))
+                    : bookingRepository.findByItem_Owner_Id(userId, page);
+            case CURRENT -> bookingRepository.findByItem_Owner_IdAndStartBeforeAndEndAfter(userId, now, now, page);
+            case PAST -> historyRepository.hasArchivedBookingsOfOwner(userId)
+                    ? fromHistory(historyRepository.findByItem_Owner_IdAndEndBefore(userId, now, page))
+                    : bookingRepository.findByItem_Owner_IdAndEndBefore(userId, now, page);
+            case FUTURE -> bookingRepository.findByItem_Owner_IdAndStartAfter(userId, now, page);
+            case WAITING -> historyRepository.hasArchivedBookingsOfOwner(userId)
+                    ? fromHistory(historyRepository.findByItem_Owner_IdAndStatus(userId, Status.WAITING, page))
+                    : bookingRepository.findByItem_Owner_IdAndStatus(userId, Status.WAITING, page);
+            case REJECTED -> historyRepository.hasArchivedBookingsOfOwner(userId)
+                    ? fromHistory(historyRepository.findByItem_Owner_IdAndStatus(userId, Status.REJECTED, page))
+                    : bookingRepository.findByItem_Owner_IdAndStatus(userId, Status.REJECTED, page);
+        };
+        return toBookingDtoResponses(bookings);
     }
 
+    @Override
+    public SseEmitter subscribe(long userId) {
+        checkUserExists(userId);
+        return eventBus.subscribe(userId);
+    }
 
-    private List<BookingDtoResponse> filterState(List<Booking> bookings, State state) {
-        LocalDateTime now = LocalDateTime.now();
+    @Override
+    public BookingExportFilter prepareExport(long userId, boolean asOwner, State state,
+                                             LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+        if (rangeStart != null && rangeEnd != null && !rangeStart.isBefore(rangeEnd)) {
+            throw new WrongDateException("Начало периода должно быть раньше его окончания");
+        }
+        checkUserExists(userId);
+        boolean includeArchive = state != State.CURRENT && state != State.FUTURE && (asOwner
+                ? historyRepository.hasArchivedBookingsOfOwner(userId)
+                : historyRepository.hasArchivedBookingsOfBooker(userId));
+        return asOwner
+                ? new BookingExportFilter(null, userId, state, rangeStart, rangeEnd, includeArchive)
+                : new BookingExportFilter(userId, null, state, rangeStart, rangeEnd, includeArchive);
+    }
 
-        Predicate<Booking> filter = switch (state) {
-            case ALL -> b -> true;
-            case CURRENT -> b -> b.getStart().isBefore(now) && b.getEnd().isAfter(now);
-            case PAST -> b -> b.getEnd().isBefore(now);
-            case FUTURE -> b -> b.getStart().isAfter(now);
-            case WAITING -> b -> b.getStatus() == Status.WAITING;
-            case REJECTED -> b -> b.getStatus() == Status.REJECTED;
-        };
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBookings(BookingExportFilter filter, OutputStream outputStream) throws IOException {
+        try (Stream<Booking> bookings = bookingRepository.streamBookings(filter);
+             SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)) {
+            Iterator<Booking> iterator = bookings.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                writer.write(toBookingDtoResponse(iterator.next()));
+                if (++written % EXPORT_FLUSH_SIZE == 0) {
+                    writer.flush();
+                    entityManager.clear();
+                }
+            }
+            if (written > 0) {
+                writer.flush();
+                outputStream.write('\n');
+            }
+        }
+    }
 
+    private static List<Booking> fromHistory(List<BookingHistory> history) {
+        return history.stream().map(BookingHistory::toBooking).toList();
+    }
+
+    private List<BookingDtoResponse> toBookingDtoResponses(List<Booking> bookings) {
         return bookings.stream()
-                .filter(filter)
                 .map(this::toBookingDtoResponse)
-                .sorted(Comparator.comparing(BookingDtoResponse::getStart))
                 .collect(Collectors.toList());
     }
 
@@ -123,12 +416,20 @@ public class BookingServiceImpl implements BookingService {
         bdr.setStart(booking.getStart());
         bdr.setEnd(booking.getEnd());
         bdr.setStatus(booking.getStatus());
-        bdr.setItem(ItemMapper.toItemDto(booking.getItem()));
+        bdr.setItem(ItemMapper.toItemShortDto(booking.getItem()));
         bdr.setBooker(UserMapper.toUserDto(booking.getBooker()));
         return bdr;
     }
 
-    private User checkUserExists(long userId) {
-        return userRepository.findById(userId).orElseThrow(() -> new NotFoundException("Пользователь не найден"));
+    private void checkUserExists(long userId) {
+        boolean exists = userDirectory.isReady()
+                ? userDirectory.mightExist(userId)
+                : referenceCache.findUser(userId).isPresent();
+        if (!exists) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+    }
+
+    private record StatusChange(Booking booking, boolean wasActive, boolean wasApproved) {
     }
 }
@@ -0,0 +1,172 @@
+package ru.practicum.shareit.booking.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDtoResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Шина событий бронирований для SSE-подписчиков владельцев.
+ * Публикация никогда не блокирует вызывающий поток: событие кладётся в ограниченный буфер
+ * подписчика, а отправкой занимается виртуальный поток этого подписчика, так что медленный клиент
+ * задерживает только себя. Подписчик, не успевающий читать и переполнивший буфер, отключается —
+ * клиент переподключается и перечитывает список бронирований. Зависшая запись в сокет
+ * прерывается таймаутом соединения Tomcat (server.tomcat.connection-timeout).
+ */
+@Slf4j
+@Component
+public class BookingEventBus {
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService dispatcher = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("booking-events-", 0).factory());
+    private final Counter overflows;
+    private final int bufferSize;
+    private final Duration timeout;
+
+    public BookingEventBus(MeterRegistry meterRegistry,
+                           @Value("${shareit.booking.stream.buffer-size:256}") int bufferSize,
+                           @Value("${shareit.booking.stream.timeout:30m}") Duration timeout) {
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        Gauge.builder("booking.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+        this.overflows = Counter.builder("booking.stream.overflows").register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(long ownerId) {
+        SseEmitter emitter = createEmitter();
+        Subscriber subscriber = new Subscriber(ownerId, emitter);
+        subscribers.computeIfAbsent(ownerId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        return emitter;
+    }
+
+    public void publish(long ownerId, BookingEventType type, BookingDtoResponse booking) {
+        Set<Subscriber> ownerSubscribers = subscribers.get(ownerId);
+        if (ownerSubscribers == null) {
+            return;
+        }
+        StreamEvent event = new StreamEvent(sequence.incrementAndGet(), type, booking);
+        ownerSubscribers.forEach(subscriber -> subscriber.offer(event));
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(timeout.toMillis());
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking.stream.heartbeat-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        subscribers.values().forEach(ownerSubscribers ->
+                ownerSubscribers.forEach(subscriber -> subscriber.offer(StreamEvent.HEARTBEAT)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final long ownerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(long ownerId, SseEmitter emitter) {
+            this.ownerId = ownerId;
+            this.emitter = emitter;
+        }
+
+        private void offer(StreamEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                overflows.increment();
+                log.info("Подписчик владельца ID {} не успевает читать события, соединение закрыто", ownerId);
+                close();
+                emitter.complete();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                StreamEvent event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event.toSseEvent());
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed.get() && !buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            buffer.clear();
+            subscriberCount.decrementAndGet();
+            subscribers.computeIfPresent(ownerId, (id, ownerSubscribers) -> {
+                ownerSubscribers.remove(this);
+                return ownerSubscribers.isEmpty() ? null : ownerSubscribers;
+            });
+        }
+    }
+
+    /**
+     * Неизменяемое событие в буфере подписчика. SseEventBuilder изменяется при каждой сборке,
+     * поэтому он создаётся заново для каждой отправки каждому подписчику.
+     */
+    private record StreamEvent(long id, BookingEventType type, BookingDtoResponse booking) {
+        private static final StreamEvent HEARTBEAT = new StreamEvent(0, null, null);
+
+        private SseEmitter.SseEventBuilder toSseEvent() {
+            if (type == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return SseEmitter.event()
+                    .id(String.valueOf(id))
+                    .name(type.name())
+                    .data(booking, MediaType.APPLICATION_JSON);
+        }
+    }
+}
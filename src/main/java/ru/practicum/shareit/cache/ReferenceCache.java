@@ -0,0 +1,85 @@
+package ru.practicum.shareit.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserDirectory;
+import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Кэш справочных данных для операций записи. Хранит отсоединённые копии сущностей,
+ * которые используются только как ссылки и для чтения полей и не должны изменяться.
+ */
+@Component
+public class ReferenceCache {
+    private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final UserDirectory userDirectory;
+    private final BoundedCache<Long, User> users;
+    private final BoundedCache<Long, Item> items;
+
+    public ReferenceCache(UserRepository userRepository,
+                          ItemRepository itemRepository,
+                          UserDirectory userDirectory,
+                          MeterRegistry meterRegistry,
+                          @Value("${shareit.cache.references.max-size:10000}") int maxSize,
+                          @Value("${shareit.cache.references.ttl:10m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.itemRepository = itemRepository;
+        this.userDirectory = userDirectory;
+        this.users = new BoundedCache<>("users", maxSize, ttl);
+        this.items = new BoundedCache<>("items", maxSize, ttl);
+        users.bindTo(meterRegistry);
+        items.bindTo(meterRegistry);
+    }
+
+    public Optional<User> findUser(long userId) {
+        if (!userDirectory.mightExist(userId)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(users.get(userId, id -> userRepository.findByIdAndDeletedFalse(id)
+                .map(ReferenceCache::copyOf)
+                .orElse(null)));
+    }
+
+    public Optional<Item> findItem(long itemId) {
+        return Optional.ofNullable(items.get(itemId, id -> itemRepository.findById(id)
+                .map(ReferenceCache::copyOf)
+                .orElse(null)));
+    }
+
+    public void evictUser(long userId) {
+        users.invalidate(userId);
+    }
+
+    public void evictItem(long itemId) {
+        items.invalidate(itemId);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setName(user.getName());
+        copy.setEmail(user.getEmail());
+        return copy;
+    }
+
+    private static Item copyOf(Item item) {
+        User owner = new User();
+        owner.setId(item.getOwner().getId());
+        Item copy = new Item();
+        copy.setId(item.getId());
+        copy.setName(item.getName());
+        copy.setDescription(item.getDescription());
+        copy.setAvailable(item.isAvailable());
+        copy.setOwner(owner);
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.shareit.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Режим виртуальных потоков (spring.threads.virtual.enabled=true): Tomcat и планировщик Spring
+ * сами переходят на виртуальные потоки, а здесь добавляются ограничитель конкурентности БД
+ * и отслеживание закрепления виртуальных потоков.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor dbConcurrencyLimiter(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${shareit.db.concurrency-limit:0}") int concurrencyLimit,
+            @Value("${shareit.db.acquire-timeout:5s}") Duration acquireTimeout) {
+        int limit = concurrencyLimit <= 0 ? poolSize : concurrencyLimit;
+        if (limit > poolSize) {
+            log.warn("Ограничение конкурентности БД {} больше размера пула соединений {}, используется {}",
+                    limit, poolSize, poolSize);
+            limit = poolSize;
+        }
+        int permits = limit;
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    log.info("Соединения источника данных {} ограничены: не более {} одновременно", beanName, permits);
+                    return new ConcurrencyLimitedDataSource(dataSource, permits, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "shareit.virtual-threads.pinned-monitor.enabled", havingValue = "true",
+            matchIfMissing = true)
+    public PinnedThreadMonitor pinnedThreadMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${shareit.virtual-threads.pinned-monitor.threshold:20ms}") Duration threshold) {
+        return new PinnedThreadMonitor(meterRegistry, threshold);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.shareit.idempotency;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String id;
+    private String fingerprint;
+    private String response;
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
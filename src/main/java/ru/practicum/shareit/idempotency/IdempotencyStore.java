@@ -0,0 +1,160 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.cache.BoundedCache;
+import ru.practicum.shareit.exception.BadRequestException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище ответов на запросы с заголовком Idempotency-Key.
+ * Повтор запроса с тем же ключом получает сохранённый ответ, не выполняя действие заново;
+ * параллельный повтор ждёт завершения первого запроса. Ответы хранятся в ограниченном
+ * кэше с истечением срока, а при включённой персистентности ещё и в таблице idempotency_keys.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final BoundedCache<String, StoredResponse> responses;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final boolean persistent;
+
+    public IdempotencyStore(IdempotencyRecordRepository recordRepository,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${shareit.idempotency.max-size:10000}") int maxSize,
+                            @Value("${shareit.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${shareit.idempotency.persistent:false}") boolean persistent) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.persistent = persistent;
+        this.responses = new BoundedCache<>("idempotency", maxSize, ttl);
+        responses.bindTo(meterRegistry);
+    }
+
+    public <T> T execute(String scope, long userId, String key, Object request,
+                         Class<T> responseType, Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Ключ идемпотентности должен содержать от 1 до " + MAX_KEY_LENGTH
+                    + " символов");
+        }
+        String id = scope + ":" + userId + ":" + key;
+        String fingerprint = fingerprint(request);
+        StoredResponse stored = responses.get(id, storedId -> load(storedId, responseType));
+        if (stored == null) {
+            CompletableFuture<StoredResponse> pending = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(id, pending);
+            stored = running == null ? run(id, fingerprint, pending, action) : await(running);
+        }
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new BadRequestException("Ключ идемпотентности уже использован для другого запроса");
+        }
+        return responseType.cast(stored.response());
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.idempotency.cleanup-interval-minutes:60}", timeUnit = TimeUnit.MINUTES)
+    public void removeExpired() {
+        if (persistent) {
+            int removed = recordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+            log.debug("Удалено {} просроченных ключей идемпотентности", removed);
+        }
+    }
+
+    private StoredResponse run(String id, String fingerprint, CompletableFuture<StoredResponse> pending,
+                               Supplier<?> action) {
+        try {
+            StoredResponse stored = responses.get(id, storedId -> null);
+            if (stored == null) {
+                stored = new StoredResponse(fingerprint, action.get());
+                save(id, stored);
+            }
+            pending.complete(stored);
+            return stored;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, pending);
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void save(String id, StoredResponse stored) {
+        responses.put(id, stored);
+        if (!persistent) {
+            return;
+        }
+        try {
+            recordRepository.save(new IdempotencyRecord(id, stored.fingerprint(),
+                    objectMapper.writeValueAsString(stored.response()), LocalDateTime.now()));
+        } catch (JsonProcessingException | DataIntegrityViolationException e) {
+            log.warn("Не удалось сохранить ответ для ключа идемпотентности {}", id, e);
+        }
+    }
+
+    private StoredResponse load(String id, Class<?> responseType) {
+        if (!persistent) {
+            return null;
+        }
+        return recordRepository.findByIdAndCreatedAtAfter(id, LocalDateTime.now().minus(ttl))
+                .map(record -> {
+                    try {
+                        return new StoredResponse(record.getFingerprint(),
+                                objectMapper.readValue(record.getResponse(), responseType));
+                    } catch (JsonProcessingException e) {
+                        log.warn("Не удалось прочитать сохранённый ответ для ключа идемпотентности {}", id, e);
+                        return null;
+                    }
+                })
+                .orElse(null);
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить отпечаток запроса", e);
+        }
+    }
+
+    private record StoredResponse(String fingerprint, Object response) {
+    }
+}
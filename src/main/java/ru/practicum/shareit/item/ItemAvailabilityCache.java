@@ -0,0 +1,43 @@
+package ru.practicum.shareit.item;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.cache.BoundedCache;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+@Component
+public class ItemAvailabilityCache {
+    private final BoundedCache<AvailabilityKey, List<AvailabilityWindowDto>> cache;
+
+    public ItemAvailabilityCache(MeterRegistry meterRegistry,
+                                 @Value("${shareit.availability.cache.max-size:10000}") int maxSize,
+                                 @Value("${shareit.availability.cache.ttl:5m}") Duration ttl) {
+        this.cache = new BoundedCache<>("itemAvailability", maxSize, ttl);
+        cache.bindTo(meterRegistry);
+    }
+
+    public List<AvailabilityWindowDto> get(long itemId, LocalDateTime from, LocalDateTime to,
+                                           Supplier<List<AvailabilityWindowDto>> loader) {
+        return cache.get(new AvailabilityKey(itemId, from, to), key -> List.copyOf(loader.get()));
+    }
+
+    public void invalidate(long itemId) {
+        cache.invalidateIf(key -> key.itemId() == itemId);
+    }
+
+    public void invalidateAll(Collection<Long> itemIds) {
+        Set<Long> ids = Set.copyOf(itemIds);
+        cache.invalidateIf(key -> ids.contains(key.itemId()));
+    }
+
+    private record AvailabilityKey(long itemId, LocalDateTime from, LocalDateTime to) {
+    }
+}
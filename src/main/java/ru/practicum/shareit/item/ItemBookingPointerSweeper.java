@@ -0,0 +1,56 @@
+package ru.practicum.shareit.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сдвигает ссылки предметов на последнее и ближайшее бронирование по мере течения времени.
+ * Первый проход пересчитывает все предметы диапазонами ID, каждый в своей короткой транзакции,
+ * последующие — только те, у которых с прошлого прохода началось или закончилось
+ * подтверждённое бронирование.
+ */
+@Slf4j
+@Component
+public class ItemBookingPointerSweeper {
+    private final ItemRepository itemRepository;
+    private final int batchSize;
+    private volatile LocalDateTime lastSweep;
+
+    public ItemBookingPointerSweeper(ItemRepository itemRepository,
+                                     @Value("${shareit.items.booking-pointers.batch-size:500}") int batchSize) {
+        this.itemRepository = itemRepository;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.items.booking-pointers.sweep-interval-seconds:60}",
+            timeUnit = TimeUnit.SECONDS)
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = lastSweep == null
+                ? refreshAll(now)
+                : itemRepository.refreshBookingPointersPassedSince(lastSweep, now);
+        lastSweep = now;
+        log.debug("Обновлены ссылки на бронирования у {} предметов", updated);
+    }
+
+    private int refreshAll(LocalDateTime now) {
+        int updated = 0;
+        long afterId = 0;
+        List<Long> itemIds;
+        do {
+            itemIds = itemRepository.findIdsAfter(afterId, Limit.of(batchSize));
+            if (!itemIds.isEmpty()) {
+                updated += itemRepository.refreshBookingPointers(itemIds, now);
+                afterId = itemIds.get(itemIds.size() - 1);
+            }
+        } while (itemIds.size() == batchSize);
+        return updated;
+    }
+}
@@ -3,10 +3,15 @@ package ru.practicum.shareit.item;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.idempotency.IdempotencyStore;
 import ru.practicum.shareit.item.comment.CommentDto;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Slf4j
@@ -15,6 +20,7 @@ import java.util.List;
 @RequestMapping("/items")
 public class ItemController {
     private final ItemService itemService;
+    private final IdempotencyStore idempotencyStore;
 
     @GetMapping
     public List<ItemDto> getItemsByUserId(@RequestHeader("X-Sharer-User-Id") long userId) {
@@ -23,9 +29,19 @@ public class ItemController {
     }
 
     @PostMapping
-    public ItemDto createItem(@RequestHeader("X-Sharer-User-Id") long userId, @RequestBody @Valid ItemDto itemDto) {
+    public ItemDto createItem(@RequestHeader("X-Sharer-User-Id") long userId,
+                              @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                              @RequestBody @Valid ItemDto itemDto) {
         log.info("Получен запрос на создание предмета от пользователя с ID={}", userId);
-        return itemService.createItem(userId, itemDto);
+        return idempotencyStore.execute("item", userId, idempotencyKey, itemDto, ItemDto.class,
+                () -> itemService.createItem(userId, itemDto));
+    }
+
+    @PostMapping("/batch")
+    public List<ItemImportResultDto> createItems(@RequestHeader("X-Sharer-User-Id") long userId,
+                                                 @RequestBody List<ItemDto> itemDtos) {
+        log.info("Получен запрос на пакетное создание {} предметов от пользователя с ID={}", itemDtos.size(), userId);
+        return itemService.createItems(userId, itemDtos);
     }
 
     @PatchMapping("/{itemId}")
@@ -43,10 +59,25 @@ public class ItemController {
         return itemService.getItemById(itemId, userId);
     }
 
+    @GetMapping("/{itemId}/availability")
+    public List<AvailabilityWindowDto> getAvailability(
+            @PathVariable long itemId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Получен запрос на свободные окна предмета с ID={} с {} по {}", itemId, from, to);
+        return itemService.getAvailability(itemId, from, to);
+    }
+
     @GetMapping("/search")
-    public List<ItemDto> searchItem(@RequestParam(required = false) String text) {
-        log.info("Получен запрос на поиск предмета: {}", text);
-        return itemService.searchItem(text);
+    public List<ItemDto> searchItem(
+            @RequestParam(required = false) String text,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "0") int from,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("Получен запрос на поиск предмета: {}, свободного с {} по {}, from={}, size={}",
+                text, start, end, from, size);
+        return itemService.searchItem(text, start, end, from, size);
     }
 
     @PostMapping("/{itemId}/comment")
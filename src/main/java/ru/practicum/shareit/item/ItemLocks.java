@@ -0,0 +1,69 @@
+package ru.practicum.shareit.item;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки для сериализации записей, относящихся к одному предмету.
+ * Записи по разным предметам почти всегда попадают в разные полосы и выполняются параллельно.
+ * Несколько полос захватываются всегда в порядке возрастания номера, чтобы исключить взаимоблокировки.
+ */
+@Component
+public class ItemLocks {
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public ItemLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(long itemId, Supplier<T> action) {
+        ReentrantLock lock = lockFor(itemId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <T> T withLocks(Collection<Long> itemIds, Supplier<T> action) {
+        int[] stripes = itemIds.stream()
+                .mapToInt(ItemLocks::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                locks[stripe].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public boolean isHeldByCurrentThread(long itemId) {
+        return lockFor(itemId).isHeldByCurrentThread();
+    }
+
+    private ReentrantLock lockFor(long itemId) {
+        return locks[stripeOf(itemId)];
+    }
+
+    private static int stripeOf(long itemId) {
+        int hash = Long.hashCode(itemId);
+        hash ^= hash >>> 16;
+        return hash & (STRIPES - 1);
+    }
+}
@@ -1,22 +1,111 @@
 package ru.practicum.shareit.item;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.item.model.Item;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
+    String BOOKING_POINTERS_UPDATE = """
+            UPDATE items i SET
+            last_booking_id = (
+                SELECT b.id FROM booking b
+                WHERE b.item_id = i.id
+                AND b.status = 'APPROVED'
+                AND b.end_time < :currentTime
+                ORDER BY b.end_time DESC
+                FETCH FIRST 1 ROWS ONLY
+            ),
+            next_booking_id = (
+                SELECT b.id FROM booking b
+                WHERE b.item_id = i.id
+                AND b.status = 'APPROVED'
+                AND b.start_time > :currentTime
+                ORDER BY b.start_time ASC
+                FETCH FIRST 1 ROWS ONLY
+            )
+            """;
 
+    @EntityGraph(attributePaths = {"lastBooking", "nextBooking"})
     List<Item> findItemsByOwner_Id(long userId);
 
+    List<Item> findTop1000ByIdGreaterThanOrderByIdAsc(long id);
+
+    @Query("SELECT i.id FROM Item i WHERE i.owner.id = :ownerId AND i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsByOwnerId(@Param("ownerId") long ownerId, @Param("afterId") long afterId, Limit limit);
+
+    @Modifying
+    @Query("UPDATE Item i SET i.available = false, i.version = i.version + 1 WHERE i.id IN :itemIds")
+    int makeUnavailable(@Param("itemIds") Collection<Long> itemIds);
+
+    @Query("""
+            SELECT i FROM Item i
+            LEFT JOIN FETCH i.lastBooking
+            LEFT JOIN FETCH i.nextBooking
+            LEFT JOIN FETCH i.comments c
+            LEFT JOIN FETCH c.author
+            WHERE i.id = :itemId
+            """)
+    Optional<Item> findWithCommentsById(@Param("itemId") long itemId);
+
     @Query("""
             SELECT i FROM Item i
-            WHERE UPPER(i.name) LIKE UPPER(CONCAT('%', :text, '%'))
-            OR UPPER(i.description) LIKE UPPER(CONCAT('%', :text, '%'))
+            WHERE i.available = true
+            AND (UPPER(i.name) LIKE UPPER(CONCAT('%', :text, '%'))
+            OR UPPER(i.description) LIKE UPPER(CONCAT('%', :text, '%')))
+            ORDER BY i.id
             """)
-    List<Item> search(@Param("text") String text);
+    List<Item> search(@Param("text") String text, Pageable pageable);
+
+    @Query("""
+            SELECT i FROM Item i
+            WHERE i.available = true
+            AND (UPPER(i.name) LIKE UPPER(CONCAT('%', :text, '%'))
+            OR UPPER(i.description) LIKE UPPER(CONCAT('%', :text, '%')))
+            AND NOT EXISTS (
+                SELECT b.id FROM Booking b
+                WHERE b.item = i
+                AND b.status = 'APPROVED'
+                AND b.start < :end
+                AND b.end > :start
+            )
+            ORDER BY i.id
+            """)
+    List<Item> searchFree(@Param("text") String text,
+                          @Param("start") LocalDateTime start,
+                          @Param("end") LocalDateTime end,
+                          Pageable pageable);
+
+
+    @Transactional
+    @Modifying
+    @Query(value = BOOKING_POINTERS_UPDATE + "WHERE i.id IN (:itemIds)", nativeQuery = true)
+    int refreshBookingPointers(@Param("itemIds") Collection<Long> itemIds,
+                               @Param("currentTime") LocalDateTime currentTime);
+
+    @Query("SELECT i.id FROM Item i WHERE i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Limit limit);
 
+    @Transactional
+    @Modifying
+    @Query(value = BOOKING_POINTERS_UPDATE + """
+            WHERE i.id IN (
+                SELECT b.item_id FROM booking b
+                WHERE b.status = 'APPROVED'
+                AND (b.start_time BETWEEN :since AND :currentTime OR b.end_time BETWEEN :since AND :currentTime)
+            )
+            """, nativeQuery = true)
+    int refreshBookingPointersPassedSince(@Param("since") LocalDateTime since,
+                                          @Param("currentTime") LocalDateTime currentTime);
 }
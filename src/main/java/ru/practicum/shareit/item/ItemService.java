@@ -1,8 +1,11 @@
 package ru.practicum.shareit.item;
 
 import ru.practicum.shareit.item.comment.CommentDto;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ItemService {
@@ -11,11 +14,15 @@ public interface ItemService {
 
     ItemDto createItem(long userId, ItemDto itemDto);
 
+    List<ItemImportResultDto> createItems(long userId, List<ItemDto> itemDtos);
+
     ItemDto updateItem(long itemId, long userId, ItemDto itemDto);
 
     ItemDto getItemById(long itemId, long userId);
 
-    List<ItemDto> searchItem(String text);
+    List<AvailabilityWindowDto> getAvailability(long itemId, LocalDateTime from, LocalDateTime to);
+
+    List<ItemDto> searchItem(String text, LocalDateTime start, LocalDateTime end, int from, int size);
 
     CommentDto postComment(CommentDto commentDto, long userId, long itemId);
 
@@ -1,56 +1,158 @@
 package ru.practicum.shareit.item;
 
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingHistoryRepository;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
 import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.cache.ReferenceCache;
 import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.exception.WrongDateException;
 import ru.practicum.shareit.item.comment.Comment;
 import ru.practicum.shareit.item.comment.CommentDto;
 import ru.practicum.shareit.item.comment.CommentMapper;
 import ru.practicum.shareit.item.comment.CommentRepository;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemImportResultDto;
 import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.item.search.ItemSearchCache;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.AfterCommit;
+import ru.practicum.shareit.util.OffsetPageRequest;
+import ru.practicum.shareit.util.OptimisticRetry;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ItemServiceImpl implements ItemService {
+    private static final int MAX_IMPORT_SIZE = 10_000;
+    private static final int IMPORT_CHUNK_SIZE = 50;
+    private static final int FREE_CHECK_CHUNK_SIZE = 500;
+
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
     private final CommentRepository commentRepository;
     private final BookingRepository bookingRepository;
+    private final BookingHistoryRepository historyRepository;
+    private final ItemSearchIndex searchIndex;
+    private final ItemSearchCache searchCache;
+    private final ReferenceCache referenceCache;
+    private final ItemAvailabilityCache availabilityCache;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final ItemLocks itemLocks;
+    private final OptimisticRetry optimisticRetry;
 
     @Override
     public List<ItemDto> getItemsByUserId(long userId) {
         List<Item> items = itemRepository.findItemsByOwner_Id(userId);
-        return items.stream().map(ItemMapper::toItemDto).collect(Collectors.toList());
+        if (items.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> itemIds = items.stream().map(Item::getId).toList();
+        Map<Long, List<Comment>> comments = commentRepository.findByItem_IdIn(itemIds).stream()
+                .collect(Collectors.groupingBy(comment -> comment.getItem().getId()));
+        for (Item item : items) {
+            item.setComments(comments.getOrDefault(item.getId(), new ArrayList<>()));
+        }
+        return items.stream().map(ItemMapper::toOwnerItemDto).collect(Collectors.toList());
     }
 
     @Override
     public ItemDto createItem(long userId, ItemDto itemDto) {
         itemDto.setOwnerId(userId);
-        return ItemMapper.toItemDto(
-                itemRepository.save(dtoToItem(itemDto))
-        );
+        Item item = itemRepository.save(dtoToItem(itemDto));
+        AfterCommit.run(() -> {
+            searchIndex.index(item);
+            searchCache.invalidateMatching(item.getName(), item.getDescription());
+        });
+        return ItemMapper.toItemDto(item);
+    }
+
+    @Override
+    @Transactional
+    public List<ItemImportResultDto> createItems(long userId, List<ItemDto> itemDtos) {
+        if (itemDtos.size() > MAX_IMPORT_SIZE) {
+            throw new BadRequestException("Нельзя создать больше " + MAX_IMPORT_SIZE + " предметов за один запрос");
+        }
+        User owner = referenceCache.findUser(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID: " + userId + " не найден!"));
+        List<ItemImportResultDto> results = new ArrayList<>(itemDtos.size());
+        List<Item> items = new ArrayList<>();
+        List<ItemImportResultDto> created = new ArrayList<>();
+        for (int i = 0; i < itemDtos.size(); i++) {
+            ItemDto itemDto = itemDtos.get(i);
+            String error = validate(itemDto);
+            ItemImportResultDto result = new ItemImportResultDto(i, null, error);
+            results.add(result);
+            if (error == null) {
+                items.add(dtoToItem(itemDto, owner));
+                created.add(result);
+            }
+        }
+        for (int from = 0; from < items.size(); from += IMPORT_CHUNK_SIZE) {
+            itemRepository.saveAll(items.subList(from, Math.min(from + IMPORT_CHUNK_SIZE, items.size())));
+            entityManager.flush();
+            entityManager.clear();
+        }
+        List<String> texts = new ArrayList<>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            texts.add(item.getName());
+            texts.add(item.getDescription());
+            created.get(i).setItem(ItemMapper.toItemDto(item));
+        }
+        AfterCommit.run(() -> {
+            items.forEach(searchIndex::index);
+            searchCache.invalidateMatching(texts.toArray(new String[0]));
+        });
+        return results;
     }
 
     @Override
     public ItemDto updateItem(long itemId, long userId, ItemDto itemDto) {
+        return itemLocks.withLock(itemId, () -> {
+            ItemUpdate update = optimisticRetry.execute(() -> applyUpdate(itemId, userId, itemDto));
+            Item updatedItem = update.item();
+            AfterCommit.run(() -> {
+                referenceCache.evictItem(itemId);
+                searchIndex.index(updatedItem);
+                searchCache.invalidateMatching(update.previousName(), update.previousDescription(),
+                        updatedItem.getName(), updatedItem.getDescription());
+            });
+            return ItemMapper.toItemDto(updatedItem);
+        });
+    }
+
+    private ItemUpdate applyUpdate(long itemId, long userId, ItemDto itemDto) {
         Item item = itemRepository.findById(itemId)
                 .orElseThrow(() -> new NotFoundException("Предмет не найден!"));
         if (item.getOwner().getId() != userId) {
             throw new NotFoundException(String.format(
                     "Пользователь с ID %d не может изменять предмет с ID %d", itemId, userId));
         }
+        if (referenceCache.findUser(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с ID: " + userId + " не найден!");
+        }
+        String previousName = item.getName();
+        String previousDescription = item.getDescription();
         if (itemDto.getName() != null) {
             item.setName(itemDto.getName());
         }
@@ -60,52 +162,147 @@ public class ItemServiceImpl implements ItemService {
         if (itemDto.getAvailable() != null) {
             item.setAvailable(itemDto.getAvailable());
         }
-        return ItemMapper.toItemDto(itemRepository.save(item));
+        return new ItemUpdate(itemRepository.saveAndFlush(item), previousName, previousDescription);
     }
 
     @Override
     public ItemDto getItemById(long itemId, long userId) {
-        Item item = itemRepository.findById(itemId)
+        Item item = itemRepository.findWithCommentsById(itemId)
                 .orElseThrow(() -> new NotFoundException("Предмет с ID " + itemId + " не найден!"));
-        List<Comment> comments = commentRepository.findByItem_Id(itemId);
-        item.setComments(comments);
         if (item.getOwner().getId() == userId) {
-            Booking lastBooking = bookingRepository.findLastBookingForItem(item, LocalDateTime.now()).orElse(null);
-            Booking nextBooking = bookingRepository.findNextBookingForItem(item, LocalDateTime.now()).orElse(null);
-            item.setLastBooking(lastBooking);
-            item.setNextBooking(nextBooking);
+            return ItemMapper.toOwnerItemDto(item);
         }
         return ItemMapper.toItemDto(item);
     }
 
     @Override
-    public List<ItemDto> searchItem(String text) {
+    public List<AvailabilityWindowDto> getAvailability(long itemId, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new WrongDateException("Начало периода должно быть раньше его окончания");
+        }
+        referenceCache.findItem(itemId)
+                .orElseThrow(() -> new NotFoundException("Предмет с ID " + itemId + " не найден!"));
+        return availabilityCache.get(itemId, from, to, () -> findFreeWindows(itemId, from, to));
+    }
+
+    @Override
+    public List<ItemDto> searchItem(String text, LocalDateTime start, LocalDateTime end, int from, int size) {
+        OffsetPageRequest page = OffsetPageRequest.of(from, size);
+        if ((start == null) != (end == null)) {
+            throw new WrongDateException("Для поиска свободных предметов нужно указать и начало, и окончание");
+        }
+        if (start != null && !start.isBefore(end)) {
+            throw new WrongDateException("Время начала не может быть позже окончания");
+        }
         if (text.isBlank()) {
             return new ArrayList<>();
         }
-        List<Item> items = itemRepository.search(text);
-        return items.stream()
-                .filter(Item::isAvailable)
-                .map(ItemMapper::toItemDto)
-                .collect(Collectors.toList());
+        return searchCache.get(text, start, end, from, size, () -> findItems(text, start, end, page));
     }
 
     public CommentDto postComment(CommentDto commentDto, long userId, long itemId) {
-        if (!bookingRepository.existsByItem_IdAndBooker_IdAndEndBefore(itemId, userId, LocalDateTime.now())) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!bookingRepository.existsByItem_IdAndBooker_IdAndEndBefore(itemId, userId, now)
+                && !historyRepository.existsByItem_IdAndBooker_IdAndEndBefore(itemId, userId, now)) {
             throw new BadRequestException("Пользователь не может комментировать этот элемент");
         }
         Comment comment = dtoToComment(commentDto, userId, itemId);
         commentRepository.save(comment);
+        AfterCommit.run(() ->
+                searchCache.invalidateMatching(comment.getItem().getName(), comment.getItem().getDescription()));
         return CommentMapper.toDto(comment);
     }
 
 
+    private List<AvailabilityWindowDto> findFreeWindows(long itemId, LocalDateTime from, LocalDateTime to) {
+        List<AvailabilityWindowDto> windows = new ArrayList<>();
+        LocalDateTime cursor = from;
+        List<Booking> bookings = bookingRepository.findItemBookingsInRange(
+                itemId, BookingIntervalIndex.ACTIVE_STATUSES, from, to);
+        for (Booking booking : bookings) {
+            if (booking.getStart().isAfter(cursor)) {
+                windows.add(new AvailabilityWindowDto(cursor, booking.getStart()));
+            }
+            if (booking.getEnd().isAfter(cursor)) {
+                cursor = booking.getEnd();
+            }
+        }
+        if (cursor.isBefore(to)) {
+            windows.add(new AvailabilityWindowDto(cursor, to));
+        }
+        return windows;
+    }
+
+    private List<ItemDto> findItems(String text, LocalDateTime start, LocalDateTime end, OffsetPageRequest page) {
+        if (searchIndex.isEnabled() && ItemSearchIndex.isIndexable(text)) {
+            int from = (int) page.getOffset();
+            int limit = (int) Math.min(Integer.MAX_VALUE, (long) from + page.getPageSize());
+            List<Long> ids = start == null ? searchIndex.search(text, limit) : findFreeItemIds(text, start, end, limit);
+            List<Long> pageIds = ids.subList(Math.min(from, ids.size()), ids.size());
+            Map<Long, Item> items = itemRepository.findAllById(pageIds).stream()
+                    .collect(Collectors.toMap(Item::getId, Function.identity()));
+            return pageIds.stream()
+                    .map(items::get)
+                    .filter(Objects::nonNull)
+                    .map(ItemMapper::toItemDto)
+                    .collect(Collectors.toList());
+        }
+        List<Item> items = start == null
+                ? itemRepository.search(text, page)
+                : itemRepository.searchFree(text, start, end, page);
+        return items.stream()
+                .map(ItemMapper::toItemDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Берёт из индекса лучшие совпадения, отбрасывает занятые в заданный период
+     * и, если свободных не хватило на страницу, запрашивает вдвое больше кандидатов.
+     */
+    private List<Long> findFreeItemIds(String text, LocalDateTime start, LocalDateTime end, int limit) {
+        int candidates = limit;
+        while (true) {
+            List<Long> ids = searchIndex.search(text, candidates);
+            List<Long> freeIds = new ArrayList<>();
+            for (int i = 0; i < ids.size() && freeIds.size() < limit; i += FREE_CHECK_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(i, Math.min(i + FREE_CHECK_CHUNK_SIZE, ids.size()));
+                Set<Long> bookedIds = new HashSet<>(bookingRepository.findBookedItemIds(chunk, start, end));
+                chunk.stream()
+                        .filter(id -> !bookedIds.contains(id))
+                        .limit(limit - freeIds.size())
+                        .forEach(freeIds::add);
+            }
+            if (freeIds.size() >= limit || ids.size() < candidates || candidates == Integer.MAX_VALUE) {
+                return freeIds;
+            }
+            candidates = (int) Math.min(Integer.MAX_VALUE, candidates * 2L);
+        }
+    }
+
+    private String validate(ItemDto itemDto) {
+        if (itemDto == null) {
+            return "Пустая запись";
+        }
+        Set<ConstraintViolation<ItemDto>> violations = validator.validate(itemDto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> String.format("Поле %s %s", violation.getPropertyPath(), violation.getMessage()))
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
     private Item dtoToItem(ItemDto itemDto) {
-        Item item = new Item();
-        User user = userRepository.findById(itemDto.getOwnerId())
+        User user = referenceCache.findUser(itemDto.getOwnerId())
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID: " + itemDto.getOwnerId()
                         + " не найден!"));
-        item.setOwner(user);
+        return dtoToItem(itemDto, user);
+    }
+
+    private Item dtoToItem(ItemDto itemDto, User owner) {
+        Item item = new Item();
+        item.setOwner(owner);
         item.setName(itemDto.getName());
         item.setDescription(itemDto.getDescription());
         item.setAvailable(itemDto.getAvailable());
@@ -115,11 +312,14 @@ public class ItemServiceImpl implements ItemService {
     private Comment dtoToComment(CommentDto dto, long userId, long itemId) {
         Comment comment = new Comment();
         comment.setText(dto.getText());
-        comment.setAuthor(userRepository.findById(userId)
+        comment.setAuthor(referenceCache.findUser(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден")));
-        comment.setItem(itemRepository.findById(itemId)
+        comment.setItem(referenceCache.findItem(itemId)
                 .orElseThrow(() -> new NotFoundException("Предмет не найден")));
         return comment;
     }
 
+
+    private record ItemUpdate(Item item, String previousName, String previousDescription) {
+    }
 }
@@ -1,11 +1,30 @@
 package ru.practicum.shareit.item.comment;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     List<Comment> findByItem_Id(long id);
 
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findByItem_IdIn(Collection<Long> itemIds);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM comments WHERE id IN (
+                SELECT c.id FROM comments c
+                WHERE c.author_id = :userId
+                OR c.item_id IN (SELECT i.id FROM items i WHERE i.owner_id = :userId)
+                FETCH FIRST :limit ROWS ONLY
+            )
+            """, nativeQuery = true)
+    int deleteInvolvingUser(@Param("userId") long userId, @Param("limit") int limit);
+
 }
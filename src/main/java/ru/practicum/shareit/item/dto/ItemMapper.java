@@ -17,10 +17,34 @@ public class ItemMapper {
                 item.getDescription(),
                 item.isAvailable(),
                 item.getOwner().getId(),
-                item.getLastBooking() != null ? BookingMapper.toBookingDto(item.getLastBooking()) : null,
-                item.getNextBooking() != null ? BookingMapper.toBookingDto(item.getNextBooking()) : null,
+                null,
+                null,
                 item.getComments() != null ? CommentMapper.toDtoList(item.getComments()) : null
         );
     }
 
+    public static ItemDto toOwnerItemDto(Item item) {
+        ItemDto itemDto = toItemDto(item);
+        if (item.getLastBooking() != null) {
+            itemDto.setLastBooking(BookingMapper.toBookingDto(item.getLastBooking()));
+        }
+        if (item.getNextBooking() != null) {
+            itemDto.setNextBooking(BookingMapper.toBookingDto(item.getNextBooking()));
+        }
+        return itemDto;
+    }
+
+    public static ItemDto toItemShortDto(Item item) {
+        return new ItemDto(
+                item.getId(),
+                item.getName(),
+                item.getDescription(),
+                item.isAvailable(),
+                item.getOwner().getId(),
+                null,
+                null,
+                null
+        );
+    }
+
 }
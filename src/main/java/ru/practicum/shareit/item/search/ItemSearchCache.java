@@ -0,0 +1,76 @@
+package ru.practicum.shareit.item.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.cache.BoundedCache;
+import ru.practicum.shareit.item.comment.CommentDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Component
+public class ItemSearchCache {
+    private final BoundedCache<SearchKey, List<ItemDto>> cache;
+
+    public ItemSearchCache(MeterRegistry meterRegistry,
+                           @Value("${shareit.search.cache.max-size:1000}") int maxSize,
+                           @Value("${shareit.search.cache.ttl:5m}") Duration ttl) {
+        this.cache = new BoundedCache<>("itemSearch", maxSize, ttl);
+        cache.bindTo(meterRegistry);
+    }
+
+    public List<ItemDto> get(String text, LocalDateTime start, LocalDateTime end, int from, int size,
+                             Supplier<List<ItemDto>> loader) {
+        SearchKey key = new SearchKey(ItemSearchIndex.normalize(text), start, end, from, size);
+        return copyOf(cache.get(key, k -> copyOf(loader.get())));
+    }
+
+    public void invalidateMatching(String... texts) {
+        List<String> normalized = Arrays.stream(texts)
+                .filter(Objects::nonNull)
+                .map(ItemSearchIndex::normalize)
+                .toList();
+        cache.invalidateIf(key -> normalized.stream().anyMatch(text -> text.contains(key.text())));
+    }
+
+    public void invalidateTimeWindows() {
+        cache.invalidateIf(key -> key.start() != null);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * ItemDto изменяемы, поэтому кэш хранит и отдаёт собственные копии:
+     * правка результата одним вызывающим не видна другим.
+     */
+    private static List<ItemDto> copyOf(List<ItemDto> items) {
+        return items.stream().map(ItemSearchCache::copyOf).toList();
+    }
+
+    private static ItemDto copyOf(ItemDto item) {
+        List<CommentDto> comments = item.getComments() == null ? null : item.getComments().stream()
+                .map(comment -> new CommentDto(comment.getId(), comment.getAuthorName(), comment.getText(),
+                        comment.getCreated()))
+                .collect(Collectors.toList());
+        return new ItemDto(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getOwnerId(), copyOf(item.getLastBooking()), copyOf(item.getNextBooking()), comments);
+    }
+
+    private static BookingDto copyOf(BookingDto booking) {
+        return booking == null ? null : new BookingDto(booking.getId(), booking.getStart(), booking.getEnd(),
+                booking.getItemId(), booking.getBookerId(), booking.getStatus());
+    }
+
+    private record SearchKey(String text, LocalDateTime start, LocalDateTime end, int from, int size) {
+    }
+}
@@ -0,0 +1,268 @@
+package ru.practicum.shareit.item.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Поисковый индекс предметов в памяти по триграммам названия и описания.
+ * Перестроение читает таблицу без блокировки поиска: новый индекс собирается отдельно,
+ * изменения, пришедшие за это время, запоминаются и применяются к нему перед подменой.
+ */
+@Slf4j
+@Component
+public class ItemSearchIndex {
+    private static final int GRAM_SIZE = 3;
+    private static final int REBUILD_CHUNK = 1000;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Comparator<ScoredItem> RANKING = Comparator.comparingInt(ScoredItem::score).reversed()
+            .thenComparingLong(ScoredItem::id);
+
+    private final ItemRepository itemRepository;
+    private final SearchMode mode;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private Map<Long, IndexedItem> documents = new HashMap<>();
+    private Map<String, Set<Long>> postings = new HashMap<>();
+    private Map<Long, IndexedItem> changedDuringRebuild;
+
+    public ItemSearchIndex(ItemRepository itemRepository,
+                           @Value("${shareit.search.mode:INDEX}") SearchMode mode) {
+        this.itemRepository = itemRepository;
+        this.mode = mode;
+    }
+
+    public boolean isEnabled() {
+        return mode == SearchMode.INDEX;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!isEnabled()) {
+            log.info("Поисковый индекс предметов отключён, поиск выполняется запросом к БД");
+            return;
+        }
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Map<Long, IndexedItem> newDocuments = new HashMap<>();
+            Map<String, Set<Long>> newPostings = new HashMap<>();
+            try {
+                long lastId = 0;
+                List<Item> chunk;
+                do {
+                    chunk = itemRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastId);
+                    for (Item item : chunk) {
+                        add(newDocuments, newPostings, toDocument(item));
+                        lastId = item.getId();
+                    }
+                } while (chunk.size() == REBUILD_CHUNK);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    for (Map.Entry<Long, IndexedItem> change : changedDuringRebuild.entrySet()) {
+                        removeDocument(newDocuments, newPostings, change.getKey());
+                        if (change.getValue() != null) {
+                            add(newDocuments, newPostings, change.getValue());
+                        }
+                    }
+                    changedDuringRebuild = null;
+                    documents = newDocuments;
+                    postings = newPostings;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            log.info("Поисковый индекс предметов построен: {} документов, {} n-грамм",
+                    newDocuments.size(), newPostings.size());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public void index(Item item) {
+        if (!isEnabled()) {
+            return;
+        }
+        IndexedItem document = toDocument(item);
+        lock.writeLock().lock();
+        try {
+            removeDocument(documents, postings, item.getId());
+            add(documents, postings, document);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(item.getId(), document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long itemId) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(documents, postings, itemId);
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.put(itemId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Запросы короче n-граммы индекс не ускоряет: для них пришлось бы оценить все документы.
+     */
+    public static boolean isIndexable(String text) {
+        return normalize(text).length() >= GRAM_SIZE;
+    }
+
+    public List<Long> search(String text) {
+        return search(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return не больше limit лучших по релевантности ID, без построения полного списка совпадений
+     */
+    public List<Long> search(String text, int limit) {
+        String query = normalize(text);
+        PriorityQueue<ScoredItem> best = new PriorityQueue<>(RANKING.reversed());
+        lock.readLock().lock();
+        try {
+            Collection<Long> candidates = query.length() < GRAM_SIZE ? documents.keySet() : candidates(query);
+            for (Long id : candidates) {
+                IndexedItem document = documents.get(id);
+                if (document == null || !document.available()) {
+                    continue;
+                }
+                int score = score(document, query);
+                if (score == 0) {
+                    continue;
+                }
+                ScoredItem scored = new ScoredItem(id, score);
+                if (best.size() < limit) {
+                    best.add(scored);
+                } else if (RANKING.compare(scored, best.peek()) < 0) {
+                    best.poll();
+                    best.add(scored);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return best.stream()
+                .sorted(RANKING)
+                .map(ScoredItem::id)
+                .toList();
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private Collection<Long> candidates(String query) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static void add(Map<Long, IndexedItem> documents, Map<String, Set<Long>> postings,
+                            IndexedItem document) {
+        documents.put(document.id(), document);
+        for (String gram : documentGrams(document)) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(document.id());
+        }
+    }
+
+    private static void removeDocument(Map<Long, IndexedItem> documents, Map<String, Set<Long>> postings,
+                                       long itemId) {
+        IndexedItem previous = documents.remove(itemId);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : documentGrams(previous)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(itemId);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> documentGrams(IndexedItem document) {
+        Set<String> grams = grams(document.name());
+        grams.addAll(grams(document.description()));
+        return grams;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static int score(IndexedItem document, String query) {
+        int score = 0;
+        if (document.name().contains(query)) {
+            score += 2;
+            if (document.name().equals(query)) {
+                score += 2;
+            } else if (document.nameTokens().stream().anyMatch(token -> token.startsWith(query))) {
+                score += 1;
+            }
+        }
+        if (document.description().contains(query)) {
+            score += 1;
+        }
+        return score;
+    }
+
+    private static IndexedItem toDocument(Item item) {
+        String name = normalize(item.getName());
+        return new IndexedItem(
+                item.getId(),
+                name,
+                normalize(item.getDescription()),
+                List.of(TOKEN_SEPARATOR.split(name)),
+                item.isAvailable()
+        );
+    }
+
+    private record IndexedItem(long id, String name, String description, List<String> nameTokens, boolean available) {
+    }
+
+    private record ScoredItem(long id, int score) {
+    }
+}
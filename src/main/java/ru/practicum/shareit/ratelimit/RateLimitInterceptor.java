@@ -0,0 +1,88 @@
+package ru.practicum.shareit.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.practicum.shareit.exception.TooManyRequestsException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает частоту запросов пользователя, определяемого заголовком X-Sharer-User-Id,
+ * отдельно для поиска, бронирований и остальных эндпоинтов.
+ * Превышение лимита приводит к {@link TooManyRequestsException}, которую обрабатывает GlobalExceptionHandler.
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+
+    private final boolean enabled;
+    private final Map<RateLimitedEndpoint, TokenBucketLimiter> limiters = new EnumMap<>(RateLimitedEndpoint.class);
+    private final Map<RateLimitedEndpoint, Counter> rejected = new EnumMap<>(RateLimitedEndpoint.class);
+
+    public RateLimitInterceptor(MeterRegistry meterRegistry,
+                                @Value("${shareit.rate-limit.enabled:true}") boolean enabled,
+                                @Value("${shareit.rate-limit.max-users:100000}") int maxUsers,
+                                @Value("${shareit.rate-limit.search.capacity:20}") int searchCapacity,
+                                @Value("${shareit.rate-limit.search.refill-per-second:10}") double searchRefill,
+                                @Value("${shareit.rate-limit.bookings.capacity:50}") int bookingsCapacity,
+                                @Value("${shareit.rate-limit.bookings.refill-per-second:25}") double bookingsRefill,
+                                @Value("${shareit.rate-limit.default.capacity:100}") int defaultCapacity,
+                                @Value("${shareit.rate-limit.default.refill-per-second:50}") double defaultRefill) {
+        this.enabled = enabled;
+        limiters.put(RateLimitedEndpoint.SEARCH, new TokenBucketLimiter(searchCapacity, searchRefill, maxUsers));
+        limiters.put(RateLimitedEndpoint.BOOKINGS, new TokenBucketLimiter(bookingsCapacity, bookingsRefill, maxUsers));
+        limiters.put(RateLimitedEndpoint.DEFAULT, new TokenBucketLimiter(defaultCapacity, defaultRefill, maxUsers));
+        for (RateLimitedEndpoint endpoint : RateLimitedEndpoint.values()) {
+            rejected.put(endpoint, Counter.builder("http.rate_limit.rejected")
+                    .tag("endpoint", endpoint.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.rate-limit.sweep-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void evictIdle() {
+        int evicted = 0;
+        for (TokenBucketLimiter limiter : limiters.values()) {
+            evicted += limiter.evictIdle();
+        }
+        if (evicted > 0) {
+            log.debug("Удалено {} восстановившихся корзин ограничителя запросов", evicted);
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String header = request.getHeader(USER_HEADER);
+        if (header == null) {
+            return true;
+        }
+        long userId;
+        try {
+            userId = Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        RateLimitedEndpoint endpoint = RateLimitedEndpoint.of(request.getRequestURI());
+        long waitNanos = limiters.get(endpoint).tryAcquire(userId);
+        if (waitNanos > 0) {
+            rejected.get(endpoint).increment();
+            throw new TooManyRequestsException("Слишком много запросов, повторите позже",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.shareit.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Неблокирующий token bucket (алгоритм GCRA): состояние корзины пользователя — одно число,
+ * теоретическое время следующего запроса, которое обновляется через CAS.
+ * Корзина, полностью восстановившаяся к моменту очистки, ничем не отличается от новой
+ * и удаляется {@link #evictIdle()}. Число корзин ограничено; когда все заняты активными
+ * пользователями, новые пользователи до ближайшей очистки распределяются по фиксированному
+ * набору общих корзин, поэтому поток запросов с выдуманными ID не задевает остальных целиком.
+ */
+public class TokenBucketLimiter {
+    private static final long EVICTED = Long.MIN_VALUE;
+    private static final int OVERFLOW_STRIPES = 1024;
+
+    private final Map<Long, AtomicLong> states = new ConcurrentHashMap<>();
+    private final AtomicLong[] overflow = new AtomicLong[OVERFLOW_STRIPES];
+    private final LongSupplier clock;
+    private final long origin;
+    private final int maxKeys;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    public TokenBucketLimiter(int capacity, double refillPerSecond, int maxKeys) {
+        this(capacity, refillPerSecond, maxKeys, System::nanoTime);
+    }
+
+    TokenBucketLimiter(int capacity, double refillPerSecond, int maxKeys, LongSupplier clock) {
+        if (capacity < 1 || refillPerSecond <= 0 || maxKeys < 1) {
+            throw new IllegalArgumentException("Ёмкость, скорость пополнения и число корзин должны быть положительными");
+        }
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+        this.maxKeys = maxKeys;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        for (int i = 0; i < OVERFLOW_STRIPES; i++) {
+            overflow[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * @return 0, если токен получен, иначе сколько наносекунд ждать до следующего токена
+     */
+    public long tryAcquire(long key) {
+        long now = clock.getAsLong() - origin;
+        AtomicLong state = stateOf(key);
+        while (true) {
+            long theoreticalArrival = state.get();
+            if (theoreticalArrival == EVICTED) {
+                states.remove(key, state);
+                state = stateOf(key);
+                continue;
+            }
+            long next = Math.max(theoreticalArrival, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (state.compareAndSet(theoreticalArrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Удаляет корзины, которые успели полностью наполниться.
+     *
+     * @return число удалённых корзин
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong() - origin;
+        int evicted = 0;
+        for (Map.Entry<Long, AtomicLong> entry : states.entrySet()) {
+            AtomicLong state = entry.getValue();
+            long theoreticalArrival = state.get();
+            if (theoreticalArrival != EVICTED && theoreticalArrival <= now
+                    && state.compareAndSet(theoreticalArrival, EVICTED)) {
+                states.remove(entry.getKey(), state);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    private AtomicLong stateOf(long key) {
+        AtomicLong state = states.get(key);
+        if (state != null) {
+            return state;
+        }
+        if (states.size() >= maxKeys) {
+            return overflow[overflowStripe(key)];
+        }
+        return states.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    static int overflowStripe(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 54) & (OVERFLOW_STRIPES - 1);
+    }
+}
@@ -3,8 +3,13 @@ package ru.practicum.shareit.user;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.user.dto.UserDeletionStatusDto;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserImportResultDto;
 
 import java.util.List;
 
@@ -16,9 +21,16 @@ public class UserController {
     private final UserService userService;
 
     @GetMapping
-    public List<UserDto> getUsers() {
-        log.info("Получен запрос на получение списка всех пользователей.");
-        return userService.getAll();
+    public List<UserDto> getUsers(@RequestParam(defaultValue = "0") long afterId,
+                                  @RequestParam(defaultValue = "100") int size) {
+        log.info("Получен запрос на получение списка пользователей после Id: {}.", afterId);
+        return userService.getAll(afterId, size);
+    }
+
+    @GetMapping(params = "stream=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        log.info("Получен запрос на выгрузку всех пользователей.");
+        return ResponseEntity.ok(userService::exportAll);
     }
 
     @GetMapping("/{userId}")
@@ -33,6 +45,12 @@ public class UserController {
         return userService.addUser(userDto);
     }
 
+    @PostMapping("/batch")
+    public List<UserImportResultDto> createUsers(@RequestBody List<UserDto> userDtos) {
+        log.info("Получен запрос на пакетное создание {} пользователей.", userDtos.size());
+        return userService.addUsers(userDtos);
+    }
+
     @PatchMapping("/{userId}")
     public UserDto updateUser(@RequestBody UserDto userDto, @PathVariable long userId) {
         log.info("Получен запрос на обновление пользователя с Id: {}.", userId);
@@ -45,4 +63,10 @@ public class UserController {
         userService.deleteUser(userId);
     }
 
+    @GetMapping("/{userId}/deletion")
+    public UserDeletionStatusDto getDeletionStatus(@PathVariable long userId) {
+        log.info("Получен запрос на статус удаления пользователя с Id: {}.", userId);
+        return userService.getDeletionStatus(userId);
+    }
+
 }
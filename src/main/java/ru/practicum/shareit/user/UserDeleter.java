@@ -0,0 +1,258 @@
+package ru.practicum.shareit.user;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.cache.BoundedCache;
+import ru.practicum.shareit.cache.ReferenceCache;
+import ru.practicum.shareit.item.ItemAvailabilityCache;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.comment.CommentRepository;
+import ru.practicum.shareit.item.search.ItemSearchCache;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.user.dto.UserDeletionStatusDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновое удаление пользователей. К моменту запуска задачи пользователь уже скрыт (users.deleted);
+ * задача снимает его предметы с доступа, а затем удаляет комментарии, бронирования, предметы
+ * и саму запись пачками, каждая в своей короткой транзакции с паузой между пачками,
+ * чтобы не держать блокировки booking и не мешать текущим бронированиям.
+ * Задачи выполняются по одной; прерванные перезапуском продолжаются при старте приложения.
+ */
+@Slf4j
+@Component
+public class UserDeleter {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final CommentRepository commentRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final ItemSearchIndex searchIndex;
+    private final ItemSearchCache searchCache;
+    private final ItemAvailabilityCache availabilityCache;
+    private final ReferenceCache referenceCache;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedCache<Long, Progress> jobs;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final Duration batchPause;
+
+    public UserDeleter(UserRepository userRepository,
+                       ItemRepository itemRepository,
+                       BookingRepository bookingRepository,
+                       CommentRepository commentRepository,
+                       BookingIntervalIndex intervalIndex,
+                       ItemSearchIndex searchIndex,
+                       ItemSearchCache searchCache,
+                       ItemAvailabilityCache availabilityCache,
+                       ReferenceCache referenceCache,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${shareit.users.deletion.batch-size:200}") int batchSize,
+                       @Value("${shareit.users.deletion.batch-pause:50ms}") Duration batchPause,
+                       @Value("${shareit.users.deletion.status-ttl:24h}") Duration statusTtl) {
+        this.userRepository = userRepository;
+        this.itemRepository = itemRepository;
+        this.bookingRepository = bookingRepository;
+        this.commentRepository = commentRepository;
+        this.intervalIndex = intervalIndex;
+        this.searchIndex = searchIndex;
+        this.searchCache = searchCache;
+        this.availabilityCache = availabilityCache;
+        this.referenceCache = referenceCache;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.jobs = new BoundedCache<>("userDeletions", 10_000, statusTtl);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        List<Long> userIds = userRepository.findDeletedIds();
+        if (!userIds.isEmpty()) {
+            log.info("Продолжается удаление {} пользователей, начатое до перезапуска", userIds.size());
+            userIds.forEach(this::submit);
+        }
+    }
+
+    public UserDeletionStatusDto submit(long userId) {
+        Progress progress = new Progress(userId);
+        jobs.put(userId, progress);
+        executor.execute(() -> run(progress));
+        return progress.toDto();
+    }
+
+    public Optional<UserDeletionStatusDto> getStatus(long userId) {
+        return Optional.ofNullable(jobs.get(userId, id -> null)).map(Progress::toDto);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Progress progress) {
+        progress.state = UserDeletionState.RUNNING;
+        progress.startedAt = LocalDateTime.now();
+        log.info("Начато удаление пользователя {}", progress.userId);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    deleteAll(progress);
+                    break;
+                } catch (DataIntegrityViolationException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.warn("Во время удаления пользователя {} появились новые связанные данные, повтор", progress.userId);
+                }
+            }
+            progress.state = UserDeletionState.COMPLETED;
+            log.info("Пользователь {} удалён: комментариев {}, бронирований {}, предметов {}", progress.userId,
+                    progress.commentsDeleted, progress.bookingsDeleted, progress.itemsDeleted);
+        } catch (RuntimeException e) {
+            progress.error = e.getMessage();
+            progress.state = UserDeletionState.FAILED;
+            log.error("Не удалось удалить пользователя {}", progress.userId, e);
+        } finally {
+            progress.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    private void deleteAll(Progress progress) {
+        long userId = progress.userId;
+        hideItems(userId);
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> commentRepository.deleteInvolvingUser(userId, batchSize));
+            progress.commentsDeleted += deleted;
+            pause();
+        } while (deleted == batchSize);
+        List<Booking> bookings;
+        do {
+            bookings = bookingRepository.findInvolvingUser(userId, Limit.of(batchSize));
+            if (!bookings.isEmpty()) {
+                deleteBookings(bookings);
+                progress.bookingsDeleted += bookings.size();
+                pause();
+            }
+        } while (bookings.size() == batchSize);
+        do {
+            deleted = transactionTemplate.execute(status ->
+                    bookingRepository.deleteArchivedInvolvingUser(userId, batchSize));
+            progress.bookingsDeleted += deleted;
+            pause();
+        } while (deleted == batchSize);
+        List<Long> itemIds;
+        do {
+            itemIds = itemRepository.findIdsByOwnerId(userId, 0, Limit.of(batchSize));
+            if (!itemIds.isEmpty()) {
+                deleteItems(itemIds);
+                progress.itemsDeleted += itemIds.size();
+                pause();
+            }
+        } while (itemIds.size() == batchSize);
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.detachRequestsOf(userId);
+            userRepository.deleteRequestsOf(userId);
+            userRepository.deleteMarked(userId);
+        });
+        referenceCache.evictUser(userId);
+        searchCache.invalidateAll();
+    }
+
+    private void hideItems(long userId) {
+        long afterId = 0;
+        List<Long> itemIds;
+        do {
+            itemIds = itemRepository.findIdsByOwnerId(userId, afterId, Limit.of(batchSize));
+            if (!itemIds.isEmpty()) {
+                List<Long> batch = itemIds;
+                transactionTemplate.executeWithoutResult(status -> itemRepository.makeUnavailable(batch));
+                batch.forEach(itemId -> {
+                    referenceCache.evictItem(itemId);
+                    searchIndex.remove(itemId);
+                });
+                afterId = batch.get(batch.size() - 1);
+                pause();
+            }
+        } while (itemIds.size() == batchSize);
+        searchCache.invalidateAll();
+    }
+
+    private void deleteBookings(List<Booking> bookings) {
+        List<Long> bookingIds = bookings.stream().map(Booking::getId).toList();
+        Set<Long> itemIds = bookings.stream().map(booking -> booking.getItem().getId()).collect(Collectors.toSet());
+        intervalIndex.removeDeleted(bookings, () -> transactionTemplate.executeWithoutResult(status -> {
+            bookingRepository.deleteAllByIdInBatch(bookingIds);
+            itemRepository.refreshBookingPointers(itemIds, LocalDateTime.now());
+        }));
+        availabilityCache.invalidateAll(itemIds);
+        searchCache.invalidateTimeWindows();
+    }
+
+    private void deleteItems(List<Long> itemIds) {
+        transactionTemplate.executeWithoutResult(status -> itemRepository.deleteAllByIdInBatch(itemIds));
+        itemIds.forEach(itemId -> {
+            referenceCache.evictItem(itemId);
+            searchIndex.remove(itemId);
+        });
+        availabilityCache.invalidateAll(itemIds);
+    }
+
+    private void pause() {
+        if (batchPause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(batchPause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Удаление пользователя прервано", e);
+        }
+    }
+
+    private static final class Progress {
+        private final long userId;
+        private volatile UserDeletionState state = UserDeletionState.PENDING;
+        private volatile long commentsDeleted;
+        private volatile long bookingsDeleted;
+        private volatile long itemsDeleted;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Progress(long userId) {
+            this.userId = userId;
+        }
+
+        private UserDeletionStatusDto toDto() {
+            return new UserDeletionStatusDto(userId, state, commentsDeleted, bookingsDeleted, itemsDeleted,
+                    startedAt, finishedAt, error);
+        }
+    }
+}
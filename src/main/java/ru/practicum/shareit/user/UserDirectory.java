@@ -0,0 +1,119 @@
+package ru.practicum.shareit.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.util.BloomFilter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Сведения о существующих пользователях без загрузки сущностей: битовое множество ID
+ * и фильтр Блума по email в нижнем регистре. Заполняется при старте приложения;
+ * до окончания заполнения все проверки отвечают «возможно» и уходят в БД.
+ * После заполнения множеству доверяют без обращения к БД: создание и удаление пользователя
+ * обновляют его после фиксации транзакции, поэтому созданные во время заполнения не теряются.
+ * Уникальность email по-прежнему гарантирует ограничение UQ_USER_EMAIL.
+ */
+@Slf4j
+@Component
+public class UserDirectory {
+    private static final int WARM_UP_CHUNK = 1000;
+
+    private final UserRepository userRepository;
+    private final BloomFilter emails;
+    private final BitSet ids = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public UserDirectory(UserRepository userRepository,
+                         @Value("${shareit.users.email-filter.expected-size:1000000}") int expectedSize,
+                         @Value("${shareit.users.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.emails = new BloomFilter(expectedSize, falsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long lastId = 0;
+        int count = 0;
+        List<UserKey> chunk;
+        do {
+            chunk = userRepository.findKeysByIdGreaterThan(lastId, Limit.of(WARM_UP_CHUNK));
+            for (UserKey key : chunk) {
+                add(key.id(), key.email());
+                lastId = key.id();
+            }
+            count += chunk.size();
+        } while (chunk.size() == WARM_UP_CHUNK);
+        ready = true;
+        log.info("Справочник пользователей заполнен: {} пользователей", count);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * До заполнения всегда отвечает «возможно», после заполнения ответ точен.
+     */
+    public boolean mightExist(long id) {
+        return !ready || containsUser(id);
+    }
+
+    boolean containsUser(long id) {
+        if (id <= 0 || id > Integer.MAX_VALUE) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return ids.get((int) id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean mightHaveEmail(String email) {
+        return !ready || emails.mightContain(normalize(email));
+    }
+
+    public void add(long id, String email) {
+        if (id > 0 && id <= Integer.MAX_VALUE) {
+            lock.writeLock().lock();
+            try {
+                ids.set((int) id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        addEmail(email);
+    }
+
+    public void addEmail(String email) {
+        if (email != null) {
+            emails.put(normalize(email));
+        }
+    }
+
+    public void remove(long id) {
+        if (id > 0 && id <= Integer.MAX_VALUE) {
+            lock.writeLock().lock();
+            try {
+                ids.clear((int) id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,9 +1,65 @@
 package ru.practicum.shareit.user;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.user.model.User;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
 
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    Optional<User> findByIdAndDeletedFalse(long id);
+
+    List<User> findByIdGreaterThanAndDeletedFalseOrderByIdAsc(long id, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u WHERE u.deleted = false ORDER BY u.id")
+    Stream<User> streamAll();
+
+    @Query("""
+            SELECT new ru.practicum.shareit.user.UserKey(u.id, u.email) FROM User u
+            WHERE u.id > :id AND u.deleted = false ORDER BY u.id
+            """)
+    List<UserKey> findKeysByIdGreaterThan(@Param("id") long id, Limit limit);
+
+    @Query("SELECT u.id FROM User u WHERE u.deleted = true ORDER BY u.id")
+    List<Long> findDeletedIds();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.deleted = true WHERE u.id = :id AND u.deleted = false")
+    int markDeleted(@Param("id") long id);
+
+    @Modifying
+    @Query(value = """
+            UPDATE items SET request_id = NULL
+            WHERE request_id IN (SELECT r.id FROM requests r WHERE r.requestor_id = :userId)
+            """, nativeQuery = true)
+    int detachRequestsOf(@Param("userId") long userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM requests WHERE requestor_id = :userId", nativeQuery = true)
+    int deleteRequestsOf(@Param("userId") long userId);
+
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id AND u.deleted = true")
+    int deleteMarked(@Param("id") long id);
+
 }
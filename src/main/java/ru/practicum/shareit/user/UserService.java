@@ -1,19 +1,29 @@
 package ru.practicum.shareit.user;
 
+import ru.practicum.shareit.user.dto.UserDeletionStatusDto;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserImportResultDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 interface UserService {
 
-    List<UserDto> getAll();
+    List<UserDto> getAll(long afterId, int size);
+
+    void exportAll(OutputStream outputStream) throws IOException;
 
     UserDto getById(long id);
 
     UserDto addUser(UserDto userDto);
 
+    List<UserImportResultDto> addUsers(List<UserDto> userDtos);
+
     UserDto updateUser(long id, UserDto userDto);
 
     void deleteUser(long id);
 
+    UserDeletionStatusDto getDeletionStatus(long id);
+
 }
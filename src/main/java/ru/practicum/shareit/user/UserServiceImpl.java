@@ -1,47 +1,162 @@
 package ru.practicum.shareit.user;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.cache.ReferenceCache;
+import ru.practicum.shareit.exception.BadRequestException;
 import ru.practicum.shareit.exception.DoubleEmailException;
 import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.user.dto.UserDeletionStatusDto;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.dto.UserImportResultDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.util.AfterCommit;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int EXPORT_FLUSH_SIZE = 500;
+    private static final int MAX_IMPORT_SIZE = 10_000;
+    private static final int IMPORT_CHUNK_SIZE = 50;
+    private static final String EMAIL_CONSTRAINT = "uq_user_email";
+    private static final String DUPLICATE_EMAIL = "Пользователь с таким email уже существует";
+
     private final UserRepository userRepository;
+    private final ReferenceCache referenceCache;
+    private final UserDirectory userDirectory;
+    private final UserDeleter userDeleter;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @Override
-    public List<UserDto> getAll() {
-        List<User> users = userRepository.findAll();
+    public List<UserDto> getAll(long afterId, int size) {
+        if (afterId < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Параметр afterId не может быть отрицательным, а size должен быть от 1 до "
+                    + MAX_PAGE_SIZE);
+        }
+        List<User> users = userRepository.findByIdGreaterThanAndDeletedFalseOrderByIdAsc(afterId, Limit.of(size));
         return UserMapper.toUserDtoList(users);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAll(OutputStream outputStream) throws IOException {
+        try (Stream<User> users = userRepository.streamAll();
+             SequenceWriter writer = objectMapper.writer().writeValuesAsArray(outputStream)) {
+            Iterator<User> iterator = users.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                writer.write(UserMapper.toUserDto(iterator.next()));
+                if (++written % EXPORT_FLUSH_SIZE == 0) {
+                    writer.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
     @Override
     public UserDto getById(long id) {
-        return UserMapper.toUserDto(userRepository.getById(id));
+        return UserMapper.toUserDto(userRepository.findByIdAndDeletedFalse(id)
+                .orElseThrow(() -> new NotFoundException("Пользователь не найден")));
     }
 
     @Override
     @Transactional
     public UserDto addUser(UserDto userDto) {
-        User user = userRepository.save(UserMapper.toUser(userDto));
+        User user;
+        try {
+            user = userRepository.saveAndFlush(UserMapper.toUser(userDto));
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+        userDirectory.addEmail(user.getEmail());
+        AfterCommit.run(() -> userDirectory.add(user.getId(), user.getEmail()));
         return UserMapper.toUserDto(user);
     }
 
+    @Override
+    @Transactional
+    public List<UserImportResultDto> addUsers(List<UserDto> userDtos) {
+        if (userDtos.size() > MAX_IMPORT_SIZE) {
+            throw new BadRequestException("Нельзя создать больше " + MAX_IMPORT_SIZE + " пользователей за один запрос");
+        }
+        List<UserImportResultDto> results = new ArrayList<>(userDtos.size());
+        Map<String, UserImportResultDto> byEmail = new HashMap<>();
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserDto userDto = userDtos.get(i);
+            String error = validate(userDto);
+            UserImportResultDto result = new UserImportResultDto(i, null, error);
+            results.add(result);
+            if (error == null && byEmail.putIfAbsent(userDto.getEmail(), result) != null) {
+                result.setError(DUPLICATE_EMAIL + " в этом запросе");
+            }
+        }
+        if (!byEmail.isEmpty()) {
+            for (String email : userRepository.findExistingEmails(byEmail.keySet())) {
+                UserImportResultDto result = byEmail.remove(email);
+                if (result != null) {
+                    result.setError(DUPLICATE_EMAIL);
+                }
+            }
+        }
+        List<User> users = new ArrayList<>(byEmail.size());
+        List<UserImportResultDto> created = new ArrayList<>(byEmail.size());
+        for (UserImportResultDto result : results) {
+            if (result.getError() == null) {
+                users.add(UserMapper.toUser(userDtos.get(result.getIndex())));
+                created.add(result);
+            }
+        }
+        try {
+            for (int from = 0; from < users.size(); from += IMPORT_CHUNK_SIZE) {
+                userRepository.saveAllAndFlush(users.subList(from, Math.min(from + IMPORT_CHUNK_SIZE, users.size())));
+                entityManager.clear();
+            }
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            userDirectory.addEmail(user.getEmail());
+            created.get(i).setUser(UserMapper.toUserDto(user));
+        }
+        AfterCommit.run(() -> users.forEach(user -> userDirectory.add(user.getId(), user.getEmail())));
+        return results;
+    }
+
     @Override
     @Transactional
     public UserDto updateUser(long id, UserDto userDto) {
-        User existingUser = userRepository.findById(id)
+        User existingUser = userRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден"));
-        if (!existingUser.getEmail().equals(userDto.getEmail())) {
-            if (userRepository.existsByEmail(userDto.getEmail())) {
-                throw new DoubleEmailException("Пользователь с таким email уже существует");
+        if (userDto.getEmail() != null && !existingUser.getEmail().equals(userDto.getEmail())) {
+            if (userDirectory.mightHaveEmail(userDto.getEmail()) && userRepository.existsByEmail(userDto.getEmail())) {
+                throw new DoubleEmailException(DUPLICATE_EMAIL);
             }
         }
         if (userDto.getName() != null) {
@@ -50,12 +165,54 @@ public class UserServiceImpl implements UserService {
         if (userDto.getEmail() != null) {
             existingUser.setEmail(userDto.getEmail());
         }
-        User updatedUser = userRepository.save(existingUser);
+        User updatedUser;
+        try {
+            updatedUser = userRepository.saveAndFlush(existingUser);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+        userDirectory.addEmail(updatedUser.getEmail());
+        referenceCache.evictUser(id);
         return UserMapper.toUserDto(updatedUser);
     }
 
+    private static RuntimeException translate(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null
+                    && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(EMAIL_CONSTRAINT)) {
+                return new DoubleEmailException(DUPLICATE_EMAIL);
+            }
+        }
+        return e;
+    }
+
+    private String validate(UserDto userDto) {
+        if (userDto == null) {
+            return "Пустая запись";
+        }
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(userDto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> String.format("Поле %s %s", violation.getPropertyPath(), violation.getMessage()))
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
     @Override
     public void deleteUser(long id) {
-        userRepository.deleteById(id);
+        if (userRepository.markDeleted(id) == 0) {
+            return;
+        }
+        userDirectory.remove(id);
+        referenceCache.evictUser(id);
+        userDeleter.submit(id);
+    }
+
+    @Override
+    public UserDeletionStatusDto getDeletionStatus(long id) {
+        return userDeleter.getStatus(id)
+                .orElseThrow(() -> new NotFoundException("Удаление пользователя не найдено"));
     }
 }
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.practicum.shareit.user.UserDeletionState;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class UserDeletionStatusDto {
+    private long userId;
+    private UserDeletionState state;
+    private long commentsDeleted;
+    private long bookingsDeleted;
+    private long itemsDeleted;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UserImportResultDto {
+    private int index;
+    private UserDto user;
+    private String error;
+}
@@ -14,13 +14,15 @@ import java.util.Objects;
 @Table(name = "users", schema = "public")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private long id;
     @NotBlank
     private String name;
     @NotBlank
     @Email
     private String email;
+    private boolean deleted;
 
     @Override
     public boolean equals(Object o) {
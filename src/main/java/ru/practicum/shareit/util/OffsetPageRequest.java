@@ -0,0 +1,38 @@
+package ru.practicum.shareit.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.practicum.shareit.exception.BadRequestException;
+
+public class OffsetPageRequest extends PageRequest {
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final int from;
+
+    private OffsetPageRequest(int from, int size, Sort sort) {
+        super(from / size, size, sort);
+        this.from = from;
+    }
+
+    public static OffsetPageRequest of(int from, int size) {
+        return of(from, size, Sort.unsorted());
+    }
+
+    public static OffsetPageRequest of(int from, int size, Sort sort) {
+        if (from < 0) {
+            throw new BadRequestException("Параметр from не может быть отрицательным");
+        }
+        if (size <= 0) {
+            throw new BadRequestException("Параметр size должен быть больше нуля");
+        }
+        if (size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Параметр size не может быть больше " + MAX_PAGE_SIZE);
+        }
+        return new OffsetPageRequest(from, size, sort);
+    }
+
+    @Override
+    public long getOffset() {
+        return from;
+    }
+}
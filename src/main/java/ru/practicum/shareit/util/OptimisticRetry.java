@@ -0,0 +1,39 @@
+package ru.practicum.shareit.util;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exception.ConcurrentUpdateException;
+
+import java.util.function.Supplier;
+
+/**
+ * Выполняет действие в отдельной транзакции и повторяет его, если запись
+ * была изменена параллельно (не совпала версия сущности).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OptimisticRetry {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                entityManager.clear();
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new ConcurrentUpdateException("Данные были изменены параллельным запросом, повторите попытку");
+                }
+                log.info("Конфликт версий, попытка {} из {}", attempt + 1, MAX_ATTEMPTS);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+CREATE ALIAS IF NOT EXISTS SETVAL AS '
+long setval(java.sql.Connection connection, String sequence, long value) throws java.sql.SQLException {
+    try (java.sql.Statement statement = connection.createStatement()) {
+        statement.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + value);
+        statement.execute("VALUES NEXT VALUE FOR " + sequence);
+    }
+    return value;
+}';
@@ -1,12 +1,19 @@
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users (
                                      id INTEGER GENERATED BY DEFAULT AS IDENTITY,
                                      name varchar(40) NOT NULL,
                                      email varchar(40) NOT NULL,
+                                     deleted boolean DEFAULT FALSE NOT NULL,
                                      created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
                                      CONSTRAINT pk_user PRIMARY KEY (id),
                                      CONSTRAINT UQ_USER_EMAIL UNIQUE (email)
 );
 
+ALTER TABLE users ADD COLUMN IF NOT EXISTS deleted boolean DEFAULT FALSE NOT NULL;
+
+SELECT setval('users_seq', GREATEST(COALESCE((SELECT MAX(id) FROM users), 0), nextval('users_seq')));
+
 CREATE TABLE IF NOT EXISTS requests (
                                         id INTEGER GENERATED BY DEFAULT AS IDENTITY,
                                         description varchar(100) NOT NULL,
@@ -17,6 +24,10 @@ CREATE TABLE IF NOT EXISTS requests (
 
 );
 
+CREATE INDEX IF NOT EXISTS idx_requests_requestor ON requests (requestor_id);
+
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS items (
                                      id INTEGER GENERATED BY DEFAULT AS IDENTITY,
                                      owner_id INTEGER NOT NULL,
@@ -24,12 +35,24 @@ CREATE TABLE IF NOT EXISTS items (
                                      name varchar(100) NOT NULL,
                                      description varchar(255) NOT NULL,
                                      available boolean,
+                                     version BIGINT DEFAULT 0 NOT NULL,
+                                     last_booking_id INTEGER,
+                                     next_booking_id INTEGER,
                                      created_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
                                      CONSTRAINT pk_item PRIMARY KEY (id),
                                      CONSTRAINT fk_item_user FOREIGN KEY (owner_id) REFERENCES users(id),
                                      CONSTRAINT fk_item_request FOREIGN KEY (request_id) REFERENCES requests(id)
 );
 
+ALTER TABLE items ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS last_booking_id INTEGER;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS next_booking_id INTEGER;
+
+SELECT setval('items_seq', GREATEST(COALESCE((SELECT MAX(id) FROM items), 0), nextval('items_seq')));
+
+CREATE INDEX IF NOT EXISTS idx_items_owner ON items (owner_id);
+CREATE INDEX IF NOT EXISTS idx_items_request ON items (request_id);
+
 
 
 CREATE TABLE IF NOT EXISTS booking (
@@ -39,6 +62,7 @@ CREATE TABLE IF NOT EXISTS booking (
                                      item_id INTEGER NOT NULL,
                                      booker_id INTEGER NOT NULL,
                                      status varchar(10) NOT NULL,
+                                     version BIGINT DEFAULT 0 NOT NULL,
                                      created_at timestamp DEFAULT CURRENT_TIMESTAMP,
                                      CONSTRAINT pk_booking PRIMARY KEY (id),
                                      CONSTRAINT fk_booking_item FOREIGN KEY (item_id) REFERENCES items(id),
@@ -46,6 +70,36 @@ CREATE TABLE IF NOT EXISTS booking (
                                      CHECK (start_time < end_time)
 );
 
+ALTER TABLE booking ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_booking_item_status_time ON booking (item_id, status, start_time, end_time);
+CREATE INDEX IF NOT EXISTS idx_booking_booker_start ON booking (booker_id, start_time);
+CREATE INDEX IF NOT EXISTS idx_booking_status_start ON booking (status, start_time);
+CREATE INDEX IF NOT EXISTS idx_booking_status_end ON booking (status, end_time);
+
+CREATE TABLE IF NOT EXISTS booking_archive (
+                                     id INTEGER NOT NULL,
+                                     start_time timestamp,
+                                     end_time timestamp,
+                                     item_id INTEGER NOT NULL,
+                                     booker_id INTEGER NOT NULL,
+                                     status varchar(10) NOT NULL,
+                                     version BIGINT DEFAULT 0 NOT NULL,
+                                     created_at timestamp,
+                                     archived_at timestamp DEFAULT CURRENT_TIMESTAMP NOT NULL,
+                                     CONSTRAINT pk_booking_archive PRIMARY KEY (id),
+                                     CONSTRAINT fk_booking_archive_item FOREIGN KEY (item_id) REFERENCES items(id),
+                                     CONSTRAINT fk_booking_archive_user FOREIGN KEY (booker_id) REFERENCES users(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_booking_archive_booker_start ON booking_archive (booker_id, start_time);
+CREATE INDEX IF NOT EXISTS idx_booking_archive_item_start ON booking_archive (item_id, start_time);
+
+CREATE OR REPLACE VIEW booking_history AS
+SELECT id, start_time, end_time, item_id, booker_id, status FROM booking
+UNION ALL
+SELECT id, start_time, end_time, item_id, booker_id, status FROM booking_archive;
+
 CREATE TABLE IF NOT EXISTS comments (
                                        id INTEGER GENERATED BY DEFAULT AS IDENTITY,
                                        text varchar(255) NOT NULL,
@@ -57,3 +111,17 @@ CREATE TABLE IF NOT EXISTS comments (
                                        CONSTRAINT fk_comment_item FOREIGN KEY (item_id) REFERENCES items(id)
 );
 
+CREATE INDEX IF NOT EXISTS idx_comments_author ON comments (author_id);
+CREATE INDEX IF NOT EXISTS idx_comments_item ON comments (item_id);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+                                       id varchar(150) NOT NULL,
+                                       fingerprint varchar(64) NOT NULL,
+                                       response text NOT NULL,
+                                       created_at timestamp NOT NULL,
+                                       CONSTRAINT pk_idempotency_key PRIMARY KEY (id)
+);
+
+ALTER TABLE idempotency_keys ALTER COLUMN response SET DATA TYPE text;
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys (created_at);
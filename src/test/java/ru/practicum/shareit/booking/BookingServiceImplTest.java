@@ -0,0 +1,371 @@
+package ru.practicum.shareit.booking;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.cache.ReferenceCache;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.exception.BookingConflictException;
+import ru.practicum.shareit.exception.UnavailableItemException;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoResponse;
+import ru.practicum.shareit.booking.enums.State;
+import ru.practicum.shareit.booking.enums.Status;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserController;
+import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = ShareItApp.class,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookingServiceImplTest {
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private UserController userController;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @SpyBean
+    private BookingRepository bookingRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private BookingIntervalIndex intervalIndex;
+    @Autowired
+    private ReferenceCache referenceCache;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookingArchiver bookingArchiver;
+
+    @Test
+    void ownerBookingsStatementCountDoesNotGrowWithRows() {
+        long smallOwnerId = saveOwnerWithBookings("small", 2);
+        long largeOwnerId = saveOwnerWithBookings("large", 20);
+
+        long smallCount = countStatements(smallOwnerId, 2);
+        long largeCount = countStatements(largeOwnerId, 20);
+
+        assertEquals(smallCount, largeCount);
+    }
+
+    @Test
+    void rejectedBookingLeavesIndexAndIdleTimelineIsEvicted() {
+        User owner = saveUser("index-owner");
+        Item item = new Item();
+        item.setName("Байдарка");
+        item.setDescription("Двухместная байдарка");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        itemRepository.save(item);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingDto bookingDto = new BookingDto(0, start, start.plusDays(2), item.getId(),
+                saveUser("index-booker").getId(), null);
+
+        BookingDtoResponse booked = bookingService.book(bookingDto);
+        assertThrows(BookingConflictException.class, () -> bookingService.book(bookingDto));
+        bookingService.approve(booked.getId(), owner.getId(), false);
+        assertTrue(intervalIndex.isTracked(item.getId()));
+
+        intervalIndex.evictIdle();
+
+        assertFalse(intervalIndex.isTracked(item.getId()));
+        assertEquals(Status.WAITING, bookingService.book(bookingDto).getStatus());
+    }
+
+    @Test
+    void bookRechecksItemAvailabilityInsideTransaction() {
+        User owner = saveUser("stale-owner");
+        Item item = new Item();
+        item.setName("Лодка");
+        item.setDescription("Надувная лодка");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        itemRepository.save(item);
+        assertTrue(referenceCache.findItem(item.getId()).orElseThrow().isAvailable());
+        item.setAvailable(false);
+        itemRepository.save(item);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+
+        assertThrows(UnavailableItemException.class, () -> bookingService.book(new BookingDto(0, start,
+                start.plusDays(1), item.getId(), saveUser("stale-booker").getId(), null)));
+    }
+
+    @Test
+    void conflictsAreFoundOnlyAgainstNeighbouringIntervals() {
+        User owner = saveUser("neighbour-owner");
+        Item item = new Item();
+        item.setName("Прицеп");
+        item.setDescription("Грузовой прицеп");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        itemRepository.save(item);
+        long bookerId = saveUser("neighbour-booker").getId();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        bookingService.book(new BookingDto(0, base, base.plusDays(60), item.getId(), bookerId, null));
+        for (int i = 0; i < 5; i++) {
+            bookingService.book(new BookingDto(0, base.plusDays(61 + i), base.plusDays(62 + i), item.getId(),
+                    bookerId, null));
+        }
+
+        assertThrows(BookingConflictException.class, () -> bookingService.book(new BookingDto(0,
+                base.plusDays(30), base.plusDays(31), item.getId(), bookerId, null)));
+        assertThrows(BookingConflictException.class, () -> bookingService.book(new BookingDto(0,
+                base.plusDays(59), base.plusDays(61).plusHours(1), item.getId(), bookerId, null)));
+        assertThrows(BookingConflictException.class, () -> bookingService.book(new BookingDto(0,
+                base.plusDays(63).plusHours(12), base.plusDays(63).plusHours(13), item.getId(), bookerId, null)));
+        assertThrows(BookingConflictException.class, () -> bookingService.book(new BookingDto(0,
+                base.minusHours(1), base.plusDays(100), item.getId(), bookerId, null)));
+        assertEquals(Status.WAITING, bookingService.book(new BookingDto(0, base.plusDays(60),
+                base.plusDays(61), item.getId(), bookerId, null)).getStatus());
+        assertEquals(Status.WAITING, bookingService.book(new BookingDto(0, base.plusDays(66),
+                base.plusDays(67), item.getId(), bookerId, null)).getStatus());
+    }
+
+    @Test
+    void approveAllRejectsTooLargeBatch() {
+        List<BookingDecisionDto> decisions = Collections.nCopies(1001, new BookingDecisionDto(1L, true));
+
+        assertThrows(BadRequestException.class, () -> bookingService.approveAll(1, decisions));
+    }
+
+    @Test
+    void approveAllReportsForeignMissingAndRepeatedBookingsPerRow() {
+        User owner = saveUser("bulk-owner");
+        User stranger = saveUser("bulk-stranger");
+        long bookerId = saveUser("bulk-booker").getId();
+        Item item = saveItem(owner, "Катамаран");
+        Item foreignItem = saveItem(stranger, "Чужой катамаран");
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        long own = book(item, bookerId, start, start.plusDays(1));
+        long foreign = book(foreignItem, bookerId, start, start.plusDays(1));
+
+        List<BookingDecisionResultDto> results = bookingService.approveAll(owner.getId(), List.of(
+                new BookingDecisionDto(own, true),
+                new BookingDecisionDto(foreign, true),
+                new BookingDecisionDto(999_999L, true),
+                new BookingDecisionDto(own, false),
+                new BookingDecisionDto(null, true)));
+
+        assertNull(results.get(0).getError());
+        assertEquals(Status.APPROVED, results.get(0).getBooking().getStatus());
+        assertNotNull(results.get(1).getError());
+        assertEquals("Бронирование не найдено", results.get(2).getError());
+        assertNotNull(results.get(3).getError());
+        assertNotNull(results.get(4).getError());
+        assertEquals(Status.WAITING, bookingRepository.findById(foreign).orElseThrow().getStatus());
+        assertEquals(Status.APPROVED, bookingRepository.findById(own).orElseThrow().getStatus());
+    }
+
+    @Test
+    void approveAllDetectsConflictsAgainstDecisionsEarlierInBatch() {
+        User owner = saveUser("batch-owner");
+        long bookerId = saveUser("batch-booker").getId();
+        Item item = saveItem(owner, "Сапборд");
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        long rejectedEarlier = book(item, bookerId, start, start.plusDays(2));
+        bookingService.approve(rejectedEarlier, owner.getId(), false);
+        long current = book(item, bookerId, start.plusDays(1), start.plusDays(3));
+
+        List<BookingDecisionResultDto> conflicting = bookingService.approveAll(owner.getId(), List.of(
+                new BookingDecisionDto(rejectedEarlier, true)));
+        assertNotNull(conflicting.get(0).getError());
+        assertEquals(Status.REJECTED, bookingRepository.findById(rejectedEarlier).orElseThrow().getStatus());
+
+        List<BookingDecisionResultDto> swapped = bookingService.approveAll(owner.getId(), List.of(
+                new BookingDecisionDto(current, false),
+                new BookingDecisionDto(rejectedEarlier, true)));
+        assertNull(swapped.get(0).getError());
+        assertNull(swapped.get(1).getError());
+        assertEquals(Status.REJECTED, bookingRepository.findById(current).orElseThrow().getStatus());
+        assertEquals(Status.APPROVED, bookingRepository.findById(rejectedEarlier).orElseThrow().getStatus());
+        assertThrows(BookingConflictException.class, () -> book(item, bookerId, start, start.plusHours(1)));
+    }
+
+    @Test
+    void approveAllRestoresIndexWhenTransactionFails() {
+        User owner = saveUser("rollback-owner");
+        long bookerId = saveUser("rollback-booker").getId();
+        Item item = saveItem(owner, "Гидроцикл");
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        long rejected = book(item, bookerId, start, start.plusDays(1));
+        long approved = book(item, bookerId, start.plusDays(2), start.plusDays(3));
+        doThrow(new DataAccessResourceFailureException("БД недоступна"))
+                .when(bookingRepository).updateStatus(anyCollection(), eq(Status.APPROVED));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> bookingService.approveAll(owner.getId(),
+                List.of(new BookingDecisionDto(rejected, false), new BookingDecisionDto(approved, true))));
+
+        assertEquals(Status.WAITING, bookingRepository.findById(rejected).orElseThrow().getStatus());
+        assertThrows(BookingConflictException.class, () -> book(item, bookerId, start, start.plusHours(1)));
+    }
+
+    @Test
+    void exportWritesEveryBookingInStartOrderAndClearsContextEvery500Rows() throws IOException {
+        User owner = saveUser("export-owner");
+        User booker = saveUser("export-booker");
+        Item item = saveItem(owner, "Палатка");
+        int count = 1201;
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setBooker(booker);
+            booking.setStart(base.plusHours((i * 7L) % count));
+            booking.setEnd(booking.getStart().plusMinutes(30));
+            booking.setStatus(Status.WAITING);
+            bookings.add(booking);
+        }
+        List<Long> expectedIds = bookingRepository.saveAll(bookings).stream()
+                .sorted(Comparator.comparing(Booking::getStart))
+                .map(Booking::getId)
+                .toList();
+        AtomicInteger maxManagedEntities = new AtomicInteger();
+        ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] bytes, int offset, int length) {
+                maxManagedEntities.accumulateAndGet(
+                        entityManager.unwrap(Session.class).getStatistics().getEntityCount(), Math::max);
+                super.write(bytes, offset, length);
+            }
+        };
+
+        bookingService.exportBookings(bookingService.prepareExport(booker.getId(), false, State.ALL, null, null),
+                output);
+
+        String ndjson = output.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        List<BookingDtoResponse> exported = objectMapper.readerFor(BookingDtoResponse.class)
+                .<BookingDtoResponse>readValues(ndjson).readAll();
+        assertEquals(count, ndjson.strip().split("\n").length);
+        assertEquals(expectedIds, exported.stream().map(BookingDtoResponse::getId).toList());
+        assertEquals(booker.getId(), exported.get(0).getBooker().getId());
+        assertTrue(maxManagedEntities.get() > 0);
+        assertTrue(maxManagedEntities.get() <= 500 + 2);
+    }
+
+    @Test
+    void archivedBookingsStayInEveryStatusListing() throws IOException {
+        User owner = saveUser("archive-owner");
+        User booker = saveUser("archive-booker");
+        Item item = saveItem(owner, "Мангал");
+        LocalDateTime longAgo = LocalDateTime.now().minusYears(2);
+        long waiting = saveBooking(item, booker, longAgo, Status.WAITING);
+        long rejected = saveBooking(item, booker, longAgo.plusDays(2), Status.REJECTED);
+        long approved = saveBooking(item, booker, longAgo.plusDays(4), Status.APPROVED);
+
+        bookingArchiver.archive();
+
+        assertTrue(bookingRepository.findAllById(List.of(waiting, rejected, approved)).isEmpty());
+        assertEquals(List.of(waiting), ids(bookingService.getBookings(booker.getId(), State.WAITING, 0, 10)));
+        assertEquals(List.of(rejected), ids(bookingService.getBookings(booker.getId(), State.REJECTED, 0, 10)));
+        assertEquals(List.of(waiting),
+                ids(bookingService.getCurrentUserBookings(owner.getId(), State.WAITING, 0, 10)));
+        assertEquals(List.of(rejected),
+                ids(bookingService.getCurrentUserBookings(owner.getId(), State.REJECTED, 0, 10)));
+        assertEquals(3, bookingService.getCurrentUserBookings(owner.getId(), State.ALL, 0, 10).size());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bookingService.exportBookings(bookingService.prepareExport(owner.getId(), true, State.REJECTED, null, null),
+                output);
+        assertEquals(List.of(rejected), ids(objectMapper.readerFor(BookingDtoResponse.class)
+                .<BookingDtoResponse>readValues(output.toString(StandardCharsets.UTF_8)).readAll()));
+    }
+
+    private long countStatements(long ownerId, int expectedSize) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertEquals(expectedSize, bookingService.getCurrentUserBookings(ownerId, State.ALL, 0, 100).size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long saveOwnerWithBookings(String prefix, int count) {
+        User owner = saveUser(prefix + "-owner");
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.setName("Вещь " + i);
+            item.setDescription("Описание " + i);
+            item.setAvailable(true);
+            item.setOwner(owner);
+            itemRepository.save(item);
+            Booking booking = new Booking();
+            booking.setItem(item);
+            booking.setBooker(saveUser(prefix + "-booker-" + i));
+            booking.setStart(start.plusHours(i));
+            booking.setEnd(start.plusHours(i + 1));
+            booking.setStatus(Status.WAITING);
+            bookingRepository.save(booking);
+        }
+        return owner.getId();
+    }
+
+    private long saveBooking(Item item, User booker, LocalDateTime start, Status status) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(start);
+        booking.setEnd(start.plusDays(1));
+        booking.setStatus(status);
+        return bookingRepository.save(booking).getId();
+    }
+
+    private static List<Long> ids(List<BookingDtoResponse> bookings) {
+        return bookings.stream().map(BookingDtoResponse::getId).toList();
+    }
+
+    private User saveUser(String name) {
+        long id = userController.createUser(new UserDto(0, name, name + "@mail.ru")).getId();
+        return userRepository.findById(id).orElseThrow();
+    }
+
+    private Item saveItem(User owner, String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setDescription(name + " для проката");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        return itemRepository.save(item);
+    }
+
+    private long book(Item item, long bookerId, LocalDateTime start, LocalDateTime end) {
+        return bookingService.book(new BookingDto(0, start, end, item.getId(), bookerId, null)).getId();
+    }
+}
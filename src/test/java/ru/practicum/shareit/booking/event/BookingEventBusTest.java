@@ -0,0 +1,147 @@
+package ru.practicum.shareit.booking.event;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDtoResponse;
+import ru.practicum.shareit.booking.enums.Status;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingEventBusTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final BookingEventBus bus = new BookingEventBus(meterRegistry, 2, Duration.ofMinutes(1)) {
+        @Override
+        SseEmitter createEmitter() {
+            return new RecordingEmitter(release);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    void eventIsDeliveredOnlyToSubscribersOfItsOwner() throws InterruptedException {
+        release.countDown();
+        RecordingEmitter owner = (RecordingEmitter) bus.subscribe(1);
+        RecordingEmitter otherOwner = (RecordingEmitter) bus.subscribe(2);
+
+        bus.publish(1, BookingEventType.APPROVED, booking(10));
+
+        String event = owner.next();
+        assertNotNull(event);
+        assertTrue(event.contains("event:APPROVED"));
+        assertTrue(event.contains("id:"));
+        assertNull(otherOwner.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscriberThatOverflowsItsBufferIsDisconnected() throws InterruptedException {
+        RecordingEmitter slow = (RecordingEmitter) bus.subscribe(1);
+        RecordingEmitter fast = (RecordingEmitter) bus.subscribe(2);
+
+        for (int i = 0; i < 4; i++) {
+            bus.publish(1, BookingEventType.CREATED, booking(i));
+        }
+
+        assertTrue(slow.completed);
+        assertEquals(1, overflows());
+        assertEquals(1, subscribers());
+
+        release.countDown();
+        bus.publish(1, BookingEventType.CREATED, booking(5));
+        bus.publish(2, BookingEventType.CREATED, booking(6));
+        assertNotNull(fast.next());
+        assertTrue(slow.sent.size() <= 1);
+    }
+
+    @Test
+    void subscriberIsRemovedAfterConnectionCompletes() throws InterruptedException {
+        release.countDown();
+        RecordingEmitter leaving = (RecordingEmitter) bus.subscribe(1);
+        RecordingEmitter staying = (RecordingEmitter) bus.subscribe(1);
+        assertEquals(2, subscribers());
+
+        leaving.completion.run();
+        leaving.completion.run();
+        bus.publish(1, BookingEventType.REJECTED, booking(1));
+
+        assertEquals(1, subscribers());
+        assertNotNull(staying.next());
+        assertNull(leaving.sent.poll(200, TimeUnit.MILLISECONDS));
+
+        staying.completion.run();
+        assertEquals(0, subscribers());
+    }
+
+    private double overflows() {
+        return meterRegistry.get("booking.stream.overflows").counter().count();
+    }
+
+    private int subscribers() {
+        return (int) meterRegistry.get("booking.stream.subscribers").gauge().value();
+    }
+
+    private static BookingDtoResponse booking(long id) {
+        return new BookingDtoResponse(id, null, null, null, null, Status.WAITING);
+    }
+
+    /**
+     * Эмиттер без HTTP-соединения: запоминает отправленные события и ждёт разрешения на отправку,
+     * чтобы тест мог изобразить медленного клиента.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+        private volatile Runnable completion;
+        private volatile boolean completed;
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            StringBuilder event = new StringBuilder();
+            builder.build().forEach(part -> event.append(part.getData()));
+            sent.add(event.toString());
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completion = callback;
+            super.onCompletion(callback);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        private String next() throws InterruptedException {
+            return sent.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
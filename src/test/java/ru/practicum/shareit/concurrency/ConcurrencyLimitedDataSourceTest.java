@@ -0,0 +1,104 @@
+package ru.practicum.shareit.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrencyLimitedDataSourceTest {
+    private final DataSource target = mock(DataSource.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void closeReleasesPermitOnce() throws SQLException {
+        Connection delegate = mock(Connection.class);
+        when(target.getConnection()).thenReturn(delegate);
+        ConcurrencyLimitedDataSource dataSource = limited(2, Duration.ofSeconds(1));
+
+        Connection connection = dataSource.getConnection();
+        assertEquals(1, available());
+
+        connection.close();
+        connection.close();
+        assertEquals(2, available());
+        verify(delegate, times(2)).close();
+    }
+
+    @Test
+    void failedCloseStillReleasesPermit() throws SQLException {
+        Connection delegate = mock(Connection.class);
+        doThrow(new SQLException("broken")).when(delegate).close();
+        when(target.getConnection()).thenReturn(delegate);
+        ConcurrencyLimitedDataSource dataSource = limited(1, Duration.ofSeconds(1));
+
+        Connection connection = dataSource.getConnection();
+
+        assertThrows(SQLException.class, connection::close);
+        assertEquals(1, available());
+    }
+
+    @Test
+    void failedGetConnectionReleasesPermit() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("database is down"));
+        when(target.getConnection("user", "secret")).thenThrow(new IllegalStateException("pool closed"));
+        ConcurrencyLimitedDataSource dataSource = limited(1, Duration.ofSeconds(1));
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertThrows(IllegalStateException.class, () -> dataSource.getConnection("user", "secret"));
+        assertEquals(1, available());
+    }
+
+    @Test
+    void waitingTimesOutWhenAllPermitsAreTaken() throws SQLException {
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        ConcurrencyLimitedDataSource dataSource = limited(1, Duration.ofMillis(100));
+        Connection held = dataSource.getConnection();
+
+        long started = System.nanoTime();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertTrue(System.nanoTime() - started >= Duration.ofMillis(100).toNanos());
+
+        held.close();
+        assertNotNull(dataSource.getConnection());
+    }
+
+    @Test
+    void interruptedWaitFailsAndKeepsInterruptFlag() throws SQLException {
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        ConcurrencyLimitedDataSource dataSource = limited(1, Duration.ofSeconds(10));
+        dataSource.getConnection();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(0, available());
+    }
+
+    private ConcurrencyLimitedDataSource limited(int limit, Duration acquireTimeout) {
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(target, limit, acquireTimeout);
+        dataSource.bindTo(meterRegistry);
+        return dataSource;
+    }
+
+    private int available() {
+        return (int) meterRegistry.get("db.concurrency.available").gauge().value();
+    }
+}
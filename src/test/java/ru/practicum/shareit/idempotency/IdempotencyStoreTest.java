@@ -0,0 +1,130 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.exception.BadRequestException;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = ShareItApp.class)
+class IdempotencyStoreTest {
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void repeatedRequestGetsStoredResponseWithoutRunningAction() {
+        IdempotencyStore store = newStore();
+        AtomicInteger calls = new AtomicInteger();
+        ItemDto request = item("Палатка");
+
+        ItemDto first = store.execute("item", 1, "replay", request, ItemDto.class,
+                () -> item("Палатка #" + calls.incrementAndGet()));
+        ItemDto second = store.execute("item", 1, "replay", request, ItemDto.class,
+                () -> item("Палатка #" + calls.incrementAndGet()));
+
+        assertEquals(1, calls.get());
+        assertEquals("Палатка #1", second.getName());
+        assertSame(first, second);
+    }
+
+    @Test
+    void sameKeyWithDifferentRequestIsRejected() {
+        IdempotencyStore store = newStore();
+        store.execute("item", 1, "mismatch", item("Палатка"), ItemDto.class, () -> item("Палатка"));
+
+        assertThrows(BadRequestException.class, () ->
+                store.execute("item", 1, "mismatch", item("Спальник"), ItemDto.class, () -> item("Спальник")));
+    }
+
+    @Test
+    void sameKeyOfAnotherUserIsIndependent() {
+        IdempotencyStore store = newStore();
+        store.execute("item", 1, "shared", item("Палатка"), ItemDto.class, () -> item("Палатка"));
+
+        ItemDto other = store.execute("item", 2, "shared", item("Спальник"), ItemDto.class, () -> item("Спальник"));
+
+        assertEquals("Спальник", other.getName());
+    }
+
+    @Test
+    void concurrentDuplicatesRunActionOnce() throws Exception {
+        IdempotencyStore store = newStore();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ItemDto request = item("Котелок");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<ItemDto>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> store.execute("item", 1, "concurrent", request, ItemDto.class, () -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return item("Котелок");
+                }));
+            }
+            List<Future<ItemDto>> futures = new ArrayList<>();
+            for (Callable<ItemDto> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            ItemDto first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<ItemDto> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void largeResponseIsPersistedAndReplayedAfterRestart() {
+        String description = "Очень подробное описание. ".repeat(400);
+        ItemDto request = item("Большой ответ");
+        newStore().execute("item", 1, "large", request, ItemDto.class,
+                () -> new ItemDto(7, "Большой ответ", description, true, 1L, null, null, List.of()));
+        assertTrue(description.length() > 4000);
+
+        ItemDto replayed = newStore().execute("item", 1, "large", request, ItemDto.class, () -> {
+            throw new AssertionError("Действие не должно выполняться повторно");
+        });
+
+        assertEquals(7, replayed.getId());
+        assertEquals(description, replayed.getDescription());
+    }
+
+    private IdempotencyStore newStore() {
+        return new IdempotencyStore(recordRepository, objectMapper, new SimpleMeterRegistry(), 100,
+                Duration.ofHours(1), true);
+    }
+
+    private static ItemDto item(String name) {
+        return new ItemDto(0, name, "Описание", true, null, null, null, null);
+    }
+}
@@ -0,0 +1,314 @@
+package ru.practicum.shareit.item;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.enums.Status;
+import ru.practicum.shareit.cache.ReferenceCache;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.comment.Comment;
+import ru.practicum.shareit.item.comment.CommentRepository;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.search.ItemSearchIndex;
+import ru.practicum.shareit.user.UserController;
+import ru.practicum.shareit.user.UserRepository;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = ShareItApp.class,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ItemServiceImplTest {
+    @Autowired
+    private ItemService itemService;
+    @Autowired
+    private UserController userController;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ItemSearchIndex searchIndex;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ReferenceCache referenceCache;
+
+    @Test
+    void getItemByIdForOwnerUsesSingleStatement() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = saveUser("card-owner");
+        Item item = saveItem(owner);
+        User booker = saveUser("card-booker");
+        saveBooking(item, booker, now.minusDays(3), now.minusDays(2));
+        saveBooking(item, booker, now.plusDays(2), now.plusDays(3));
+        for (int i = 0; i < 3; i++) {
+            saveComment(item, saveUser("card-author-" + i));
+        }
+        itemRepository.refreshBookingPointers(List.of(item.getId()), now);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ItemDto itemDto = itemService.getItemById(item.getId(), owner.getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertNotNull(itemDto.getLastBooking());
+        assertNotNull(itemDto.getNextBooking());
+        assertEquals(3, itemDto.getComments().size());
+    }
+
+    @Test
+    void bookingPointersMatchLastAndNextBookingQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        User owner = saveUser("pointer-owner");
+        Item item = saveItem(owner);
+        User booker = saveUser("pointer-booker");
+        saveBooking(item, booker, now.minusDays(10), now.minusDays(9), Status.APPROVED);
+        saveBooking(item, booker, now.minusDays(5), now.minusDays(4), Status.APPROVED);
+        saveBooking(item, booker, now.minusDays(3), now.minusDays(2), Status.REJECTED);
+        saveBooking(item, booker, now.minusHours(1), now.plusHours(1), Status.APPROVED);
+        saveBooking(item, booker, now.plusDays(4), now.plusDays(5), Status.APPROVED);
+        Booking waiting = saveBooking(item, booker, now.plusDays(2), now.plusDays(3), Status.WAITING);
+        itemRepository.refreshBookingPointers(List.of(item.getId()), now);
+
+        assertPointersMatchQueries(item, owner);
+
+        bookingService.approve(waiting.getId(), owner.getId(), true);
+        ItemDto itemDto = assertPointersMatchQueries(item, owner);
+        assertEquals(waiting.getId(), itemDto.getNextBooking().getId());
+
+        bookingService.approve(waiting.getId(), owner.getId(), false);
+        assertPointersMatchQueries(item, owner);
+    }
+
+    @Test
+    void createItemsIndexesItemsOnlyAfterCommit() {
+        User owner = saveUser("import-owner");
+        List<ItemDto> itemDtos = List.of(new ItemDto(0, "Откатанный штатив", "Не попадёт в индекс", true,
+                null, null, null, null));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            itemService.createItems(owner.getId(), itemDtos);
+            status.setRollbackOnly();
+        });
+        assertTrue(searchIndex.search("откатанный штатив").isEmpty());
+
+        itemService.createItems(owner.getId(), itemDtos);
+        assertEquals(1, searchIndex.search("откатанный штатив").size());
+    }
+
+    @Test
+    void updateItemReindexesOnlyAfterCommit() {
+        User owner = saveUser("rename-owner");
+        ItemDto item = itemService.createItem(owner.getId(), new ItemDto(0, "Старый рубанок", "Ручной", true,
+                null, null, null, null));
+        ItemDto rename = new ItemDto(0, "Новый рубанок", null, null, null, null, null, null);
+
+        assertEquals(1, search("рубанок").size());
+        transactionTemplate.executeWithoutResult(status -> {
+            itemService.updateItem(item.getId(), owner.getId(), rename);
+            status.setRollbackOnly();
+        });
+        assertTrue(searchIndex.search("новый рубанок").isEmpty());
+        assertEquals("Старый рубанок", search("рубанок").get(0).getName());
+
+        transactionTemplate.executeWithoutResult(status -> itemService.updateItem(item.getId(), owner.getId(), rename));
+        assertEquals("Новый рубанок", search("рубанок").get(0).getName());
+    }
+
+    @Test
+    void cachedSearchResultsAreNotSharedBetweenCallers() {
+        User owner = saveUser("cache-owner");
+        itemService.createItem(owner.getId(), new ItemDto(0, "Кэшируемый лобзик", "Электрический", true,
+                null, null, null, null));
+
+        search("лобзик").get(0).setName("Испорчено");
+
+        assertEquals("Кэшируемый лобзик", search("лобзик").get(0).getName());
+    }
+
+    @Test
+    void searchPagesOverIndexAndShortQueriesUseDatabase() {
+        User owner = saveUser("page-owner");
+        for (int i = 0; i < 5; i++) {
+            itemService.createItem(owner.getId(), new ItemDto(0, "Шуруповёрт-ёж " + i, "Набор бит", true,
+                    null, null, null, null));
+        }
+
+        List<ItemDto> first = search("шуруповёрт-ёж", 0, 2);
+        List<ItemDto> second = search("шуруповёрт-ёж", 2, 2);
+        List<ItemDto> last = search("шуруповёрт-ёж", 4, 2);
+
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, last.size());
+        assertTrue(first.get(1).getId() < second.get(0).getId());
+        assertEquals(5, search("ёж", 0, 10).size());
+    }
+
+    @Test
+    void freeItemSearchWidensCandidatesWhenBestMatchesAreBooked() {
+        User owner = saveUser("tent-owner");
+        User booker = saveUser("tent-booker");
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(itemService.createItem(owner.getId(), new ItemDto(0, "Палатка-купол " + i, "Трёхместная", true,
+                    null, null, null, null)).getId());
+        }
+        LocalDateTime start = LocalDateTime.now().plusDays(10);
+        for (Long id : ids.subList(0, 2)) {
+            saveBooking(itemRepository.findById(id).orElseThrow(), booker, start, start.plusDays(2));
+        }
+
+        List<ItemDto> free = transactionTemplate.execute(status ->
+                itemService.searchItem("палатка-купол", start.plusDays(1), start.plusDays(3), 0, 2));
+
+        assertEquals(ids.subList(2, 4), free.stream().map(ItemDto::getId).toList());
+    }
+
+    @Test
+    void deletedOwnerCannotMakeHiddenItemAvailableAgain() {
+        User owner = saveUser("leaving-owner");
+        Item item = saveItem(owner);
+        userRepository.markDeleted(owner.getId());
+        referenceCache.evictUser(owner.getId());
+        transactionTemplate.executeWithoutResult(status -> itemRepository.makeUnavailable(List.of(item.getId())));
+
+        assertThrows(NotFoundException.class, () -> itemService.updateItem(item.getId(), owner.getId(),
+                new ItemDto(0, null, null, true, null, null, null, null)));
+        assertFalse(itemRepository.findById(item.getId()).orElseThrow().isAvailable());
+    }
+
+    @Test
+    void availabilityMergesTouchingAndNestedBookings() {
+        User owner = saveUser("windows-owner");
+        User booker = saveUser("windows-booker");
+        Item item = saveItem(owner);
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        saveBooking(item, booker, base.plusDays(1), base.plusDays(2), Status.APPROVED);
+        saveBooking(item, booker, base.plusDays(2), base.plusDays(3), Status.WAITING);
+        saveBooking(item, booker, base.plusDays(5), base.plusDays(8), Status.APPROVED);
+        saveBooking(item, booker, base.plusDays(6), base.plusDays(7), Status.WAITING);
+        saveBooking(item, booker, base.plusDays(8), base.plusDays(9), Status.REJECTED);
+
+        assertEquals(List.of(
+                        new AvailabilityWindowDto(base, base.plusDays(1)),
+                        new AvailabilityWindowDto(base.plusDays(3), base.plusDays(5)),
+                        new AvailabilityWindowDto(base.plusDays(8), base.plusDays(10))),
+                itemService.getAvailability(item.getId(), base, base.plusDays(10)));
+    }
+
+    @Test
+    void availabilityIsTrimmedByBookingsCrossingWindowEdges() {
+        User owner = saveUser("edges-owner");
+        User booker = saveUser("edges-booker");
+        Item item = saveItem(owner);
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        saveBooking(item, booker, base.minusDays(1), base.plusDays(1), Status.APPROVED);
+        saveBooking(item, booker, base.plusDays(9), base.plusDays(11), Status.WAITING);
+
+        assertEquals(List.of(new AvailabilityWindowDto(base.plusDays(1), base.plusDays(9))),
+                itemService.getAvailability(item.getId(), base, base.plusDays(10)));
+        assertTrue(itemService.getAvailability(item.getId(), base.plusHours(1), base.plusHours(2)).isEmpty());
+        assertEquals(List.of(new AvailabilityWindowDto(base.plusDays(11), base.plusDays(12))),
+                itemService.getAvailability(item.getId(), base.plusDays(10), base.plusDays(12)));
+    }
+
+    @Test
+    void availabilityIsRecalculatedAfterBookingDecision() {
+        User owner = saveUser("decision-owner");
+        long bookerId = saveUser("decision-booker").getId();
+        Item item = saveItem(owner);
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withNano(0);
+        long bookingId = bookingService.book(new BookingDto(0, base.plusDays(1), base.plusDays(2), item.getId(),
+                bookerId, null)).getId();
+        assertEquals(2, itemService.getAvailability(item.getId(), base, base.plusDays(3)).size());
+
+        bookingService.approve(bookingId, owner.getId(), false);
+
+        assertEquals(List.of(new AvailabilityWindowDto(base, base.plusDays(3))),
+                itemService.getAvailability(item.getId(), base, base.plusDays(3)));
+    }
+
+    private List<ItemDto> search(String text) {
+        return search(text, 0, 10);
+    }
+
+    private List<ItemDto> search(String text, int from, int size) {
+        return transactionTemplate.execute(status -> itemService.searchItem(text, null, null, from, size));
+    }
+
+    private ItemDto assertPointersMatchQueries(Item item, User owner) {
+        LocalDateTime now = LocalDateTime.now();
+        ItemDto itemDto = itemService.getItemById(item.getId(), owner.getId());
+        assertEquals(bookingRepository.findLastBookingForItem(item, now).map(Booking::getId).orElse(null),
+                itemDto.getLastBooking() == null ? null : itemDto.getLastBooking().getId());
+        assertEquals(bookingRepository.findNextBookingForItem(item, now).map(Booking::getId).orElse(null),
+                itemDto.getNextBooking() == null ? null : itemDto.getNextBooking().getId());
+        return itemDto;
+    }
+
+    private User saveUser(String name) {
+        long id = userController.createUser(new UserDto(0, name, name + "@mail.ru")).getId();
+        return userRepository.findById(id).orElseThrow();
+    }
+
+    private Item saveItem(User owner) {
+        Item item = new Item();
+        item.setName("Дрель");
+        item.setDescription("Аккумуляторная дрель");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        return itemRepository.save(item);
+    }
+
+    private void saveBooking(Item item, User booker, LocalDateTime start, LocalDateTime end) {
+        saveBooking(item, booker, start, end, Status.APPROVED);
+    }
+
+    private Booking saveBooking(Item item, User booker, LocalDateTime start, LocalDateTime end, Status status) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(start);
+        booking.setEnd(end);
+        booking.setStatus(status);
+        return bookingRepository.save(booking);
+    }
+
+    private void saveComment(Item item, User author) {
+        Comment comment = new Comment();
+        comment.setItem(item);
+        comment.setAuthor(author);
+        comment.setText("Отличная вещь");
+        commentRepository.save(comment);
+    }
+}
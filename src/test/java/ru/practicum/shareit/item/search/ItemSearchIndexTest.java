@@ -0,0 +1,127 @@
+package ru.practicum.shareit.item.search;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ItemSearchIndexTest {
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final ItemSearchIndex index = new ItemSearchIndex(itemRepository, SearchMode.INDEX);
+
+    @Test
+    void findsSubstringOfNameOrDescriptionIgnoringCase() {
+        index.index(item(1, "Дрель ударная", "Мощная"));
+        index.index(item(2, "Отвёртка", "Аккумуляторная, не ДРЕЛЬ"));
+        index.index(item(3, "Пила", "Ручная"));
+
+        assertEquals(List.of(1L, 2L), index.search("ДРЕль"));
+        assertEquals(List.of(1L), index.search("ударн"));
+        assertTrue(index.search("перфоратор").isEmpty());
+    }
+
+    @Test
+    void gramsMustAppearInOneFieldAsSubstring() {
+        index.index(item(1, "абвгд", "ежзий"));
+
+        assertTrue(index.search("где").isEmpty());
+        assertTrue(index.search("бвгдеж").isEmpty());
+        assertEquals(List.of(1L), index.search("бвг"));
+    }
+
+    @Test
+    void shortQueriesScanAllDocuments() {
+        index.index(item(1, "Ящик", "Для инструментов"));
+        index.index(item(2, "Пила", "Ручная"));
+
+        assertEquals(List.of(1L), index.search("ящ"));
+        assertEquals(List.of(1L, 2L), index.search("и"));
+        assertTrue(index.search("ъ").isEmpty());
+    }
+
+    @Test
+    void exactNameThenTokenPrefixThenDescriptionMatches() {
+        index.index(item(1, "Большая лестница", "Алюминиевая"));
+        index.index(item(2, "Стремянка", "Почти лестница"));
+        index.index(item(3, "Лестница", "Деревянная"));
+        index.index(item(4, "Лестница-трансформер", "Складная"));
+
+        assertEquals(List.of(3L, 1L, 4L, 2L), index.search("лестница"));
+    }
+
+    @Test
+    void limitedSearchKeepsOnlyBestMatchesInRankingOrder() {
+        index.index(item(1, "Большая лестница", "Алюминиевая"));
+        index.index(item(2, "Стремянка", "Почти лестница"));
+        index.index(item(3, "Лестница", "Деревянная"));
+        index.index(item(4, "Лестница-трансформер", "Складная"));
+
+        assertEquals(List.of(3L, 1L), index.search("лестница", 2));
+        assertEquals(List.of(3L), index.search("лестница", 1));
+        assertEquals(List.of(3L, 1L, 4L, 2L), index.search("лестница", 10));
+    }
+
+    @Test
+    void onlyQueriesOfGramLengthAreIndexable() {
+        assertTrue(ItemSearchIndex.isIndexable("Дре"));
+        assertFalse(ItemSearchIndex.isIndexable("др"));
+        assertFalse(ItemSearchIndex.isIndexable(null));
+    }
+
+    @Test
+    void updateReplacesOldTextAndAvailability() {
+        index.index(item(1, "Молоток", "Слесарный"));
+
+        index.index(item(1, "Кувалда", "Тяжёлая"));
+        assertTrue(index.search("молоток").isEmpty());
+        assertEquals(List.of(1L), index.search("кувалда"));
+
+        Item unavailable = item(1, "Кувалда", "Тяжёлая");
+        unavailable.setAvailable(false);
+        index.index(unavailable);
+        assertTrue(index.search("кувалда").isEmpty());
+    }
+
+    @Test
+    void removedItemIsNotFound() {
+        index.index(item(1, "Стамеска", "Узкая"));
+        index.index(item(2, "Стамеска", "Широкая"));
+
+        index.remove(1);
+
+        assertEquals(List.of(2L), index.search("стамеска"));
+        assertEquals(List.of(2L), index.search("ст"));
+    }
+
+    @Test
+    void rebuildLoadsAllItemsAndKeepsChangesMadeWhileScanning() {
+        index.index(item(9, "Устаревший", "Уже удалён из БД"));
+        when(itemRepository.findTop1000ByIdGreaterThanOrderByIdAsc(anyLong())).thenAnswer(invocation -> {
+            index.index(item(3, "Новый рубанок", "Добавлен во время перестроения"));
+            index.remove(2);
+            return List.of(item(1, "Рубанок", "Старый"), item(2, "Рубанок", "Удаляемый"));
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of(1L, 3L), index.search("рубанок"));
+        assertTrue(index.search("устаревший").isEmpty());
+    }
+
+    private static Item item(long id, String name, String description) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setDescription(description);
+        item.setAvailable(true);
+        return item;
+    }
+}
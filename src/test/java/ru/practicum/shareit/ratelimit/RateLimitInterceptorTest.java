@@ -0,0 +1,50 @@
+package ru.practicum.shareit.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.shareit.exception.GlobalExceptionHandler;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RateLimitInterceptorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new SearchController())
+            .addInterceptors(new RateLimitInterceptor(meterRegistry, true, 100, 1, 0.1, 50, 25, 100, 50))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    @Test
+    void exceededLimitReturnsRetryAfterRoundedUpToSeconds() throws Exception {
+        mvc.perform(get("/items/search").header("X-Sharer-User-Id", "1"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/items/search").header("X-Sharer-User-Id", "1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+        mvc.perform(get("/items/search").header("X-Sharer-User-Id", "2"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void requestsWithoutUserAreNotLimited() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(get("/items/search"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @RestController
+    static class SearchController {
+        @GetMapping("/items/search")
+        public String search() {
+            return "ok";
+        }
+    }
+}
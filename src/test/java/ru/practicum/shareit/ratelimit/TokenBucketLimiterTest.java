@@ -0,0 +1,164 @@
+package ru.practicum.shareit.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(123 * SECOND);
+
+    @Test
+    void burstUpToCapacityThenWaitForNextToken() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(3, 1, 100, clock::get);
+
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(SECOND, limiter.tryAcquire(1));
+
+        clock.addAndGet(SECOND / 4);
+        assertEquals(SECOND * 3 / 4, limiter.tryAcquire(1));
+    }
+
+    @Test
+    void tokensRefillAtConfiguredRate() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 4, 100, clock::get);
+        limiter.tryAcquire(1);
+        limiter.tryAcquire(1);
+
+        clock.addAndGet(SECOND / 4);
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(SECOND / 4, limiter.tryAcquire(1));
+
+        clock.addAndGet(10 * SECOND);
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(SECOND / 4, limiter.tryAcquire(1));
+    }
+
+    @Test
+    void rejectedRequestDoesNotConsumeToken() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 100, clock::get);
+        limiter.tryAcquire(1);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(1);
+        }
+
+        clock.addAndGet(SECOND);
+        assertEquals(0, limiter.tryAcquire(1));
+    }
+
+    @Test
+    void usersHaveSeparateBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 100, clock::get);
+
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(2));
+        assertEquals(SECOND, limiter.tryAcquire(1));
+    }
+
+    @Test
+    void onlyRefilledBucketsAreEvicted() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 1, 100, clock::get);
+        limiter.tryAcquire(1);
+        clock.addAndGet(SECOND);
+        limiter.tryAcquire(2);
+        limiter.tryAcquire(2);
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.size());
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(SECOND, limiter.tryAcquire(2));
+    }
+
+    @Test
+    void usersBeyondLimitFallIntoOverflowStripes() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 1, clock::get);
+        long sameStripe = keyWithStripe(TokenBucketLimiter.overflowStripe(2), 3);
+
+        assertEquals(0, limiter.tryAcquire(1));
+        assertEquals(0, limiter.tryAcquire(2));
+        assertEquals(SECOND, limiter.tryAcquire(sameStripe));
+        assertEquals(1, limiter.size());
+
+        clock.addAndGet(SECOND);
+        limiter.evictIdle();
+        assertEquals(0, limiter.tryAcquire(sameStripe));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void floodOfMadeUpIdsDoesNotThrottleEveryNewcomer() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 100, clock::get);
+        long flooder = 1_000_000;
+        for (long fake = flooder; fake < flooder + 100; fake++) {
+            limiter.tryAcquire(fake);
+        }
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire(flooder);
+        }
+        assertEquals(100, limiter.size());
+
+        int throttled = 0;
+        for (long newcomer = 1; newcomer <= 100; newcomer++) {
+            if (limiter.tryAcquire(newcomer) > 0) {
+                throttled++;
+            }
+        }
+        assertTrue(throttled < 20, "Отклонено новых пользователей: " + throttled);
+    }
+
+    @Test
+    void concurrentRequestsGetExactlyCapacityTokens() throws Exception {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1000, 1, 100, clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    int acquired = 0;
+                    for (int j = 0; j < 500; j++) {
+                        if (limiter.tryAcquire(1) == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                });
+            }
+            int total = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                total += future.get();
+            }
+            assertEquals(1000, total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(0, 1, 100));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(1, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(1, 1, 0));
+    }
+
+    private static long keyWithStripe(int stripe, long from) {
+        long key = from;
+        while (TokenBucketLimiter.overflowStripe(key) != stripe) {
+            key++;
+        }
+        return key;
+    }
+}
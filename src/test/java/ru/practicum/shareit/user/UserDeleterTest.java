@@ -0,0 +1,130 @@
+package ru.practicum.shareit.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.Booking;
+import ru.practicum.shareit.booking.BookingHistoryRepository;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.enums.Status;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.comment.Comment;
+import ru.practicum.shareit.item.comment.CommentRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.dto.UserDeletionStatusDto;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = ShareItApp.class, properties = {
+        "shareit.users.deletion.batch-size=2",
+        "shareit.users.deletion.batch-pause=0ms"
+})
+class UserDeleterTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ItemRepository itemRepository;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private BookingHistoryRepository historyRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void deletionRemovesItemsBookingsArchiveAndComments() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        User deleted = saveUser("deleted-user");
+        User neighbour = saveUser("neighbour");
+        Item neighbourItem = saveItem(neighbour, "Соседская вещь");
+        List<Item> items = List.of(saveItem(deleted, "Первая"), saveItem(deleted, "Вторая"),
+                saveItem(deleted, "Третья"));
+        for (Item item : items) {
+            saveBooking(item, neighbour, now.minusDays(3), now.minusDays(2));
+            saveBooking(item, neighbour, now.plusDays(2), now.plusDays(3));
+            saveComment(item, neighbour);
+        }
+        Booking ownBooking = saveBooking(neighbourItem, deleted, now.minusDays(5), now.minusDays(4));
+        Booking archived = saveBooking(neighbourItem, deleted, now.minusDays(700), now.minusDays(699));
+        Booking archivedOnOwnItem = saveBooking(items.get(0), neighbour, now.minusDays(800), now.minusDays(799));
+        transactionTemplate.executeWithoutResult(status -> {
+            bookingRepository.copyToArchive(List.of(archived.getId(), archivedOnOwnItem.getId()));
+            bookingRepository.deleteAllByIdInBatch(List.of(archived.getId(), archivedOnOwnItem.getId()));
+        });
+        saveComment(neighbourItem, deleted);
+        Booking neighbourBooking = saveBooking(neighbourItem, neighbour, now.plusDays(1), now.plusDays(2));
+        itemRepository.refreshBookingPointers(List.of(neighbourItem.getId()), now);
+
+        userService.deleteUser(deleted.getId());
+        UserDeletionStatusDto status = awaitFinished(deleted.getId());
+
+        assertEquals(UserDeletionState.COMPLETED, status.getState(), status.getError());
+        assertEquals(4, status.getCommentsDeleted());
+        assertEquals(9, status.getBookingsDeleted());
+        assertEquals(3, status.getItemsDeleted());
+        assertFalse(userRepository.existsById(deleted.getId()));
+        assertTrue(items.stream().noneMatch(item -> itemRepository.existsById(item.getId())));
+        assertFalse(bookingRepository.existsById(ownBooking.getId()));
+        assertTrue(historyRepository.findById(archived.getId()).isEmpty());
+        assertTrue(bookingRepository.existsById(neighbourBooking.getId()));
+        assertTrue(userRepository.existsById(neighbour.getId()));
+        assertEquals(0, commentRepository.findByItem_Id(neighbourItem.getId()).size());
+    }
+
+    private UserDeletionStatusDto awaitFinished(long userId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        UserDeletionStatusDto status = userService.getDeletionStatus(userId);
+        while (status.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            status = userService.getDeletionStatus(userId);
+        }
+        return status;
+    }
+
+    private User saveUser(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@mail.ru");
+        return userRepository.save(user);
+    }
+
+    private Item saveItem(User owner, String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setDescription("Описание");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        return itemRepository.save(item);
+    }
+
+    private Booking saveBooking(Item item, User booker, LocalDateTime start, LocalDateTime end) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(start);
+        booking.setEnd(end);
+        booking.setStatus(Status.APPROVED);
+        return bookingRepository.save(booking);
+    }
+
+    private void saveComment(Item item, User author) {
+        Comment comment = new Comment();
+        comment.setItem(item);
+        comment.setAuthor(author);
+        comment.setText("Отзыв");
+        commentRepository.save(comment);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.shareit.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class UserDirectoryTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDirectory directory = new UserDirectory(userRepository, 1000, 0.01);
+
+    @Test
+    void everythingMightExistBeforeWarmUp() {
+        assertFalse(directory.isReady());
+        assertTrue(directory.mightExist(42));
+        assertTrue(directory.mightHaveEmail("anyone@mail.ru"));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void warmedUpUsersAreFoundWithoutDatabase() {
+        warmUp(new UserKey(1, "First@Mail.ru"), new UserKey(2, "second@mail.ru"));
+
+        assertTrue(directory.mightExist(1));
+        assertTrue(directory.mightExist(2));
+        assertTrue(directory.mightHaveEmail("first@mail.ru"));
+        assertFalse(directory.mightHaveEmail("third@mail.ru"));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void missAfterWarmUpIsAnsweredWithoutDatabase() {
+        warmUp(new UserKey(1, "first@mail.ru"));
+
+        assertFalse(directory.mightExist(7));
+        assertFalse(directory.mightExist(Integer.MAX_VALUE + 1L));
+        assertFalse(directory.mightExist(0));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void addedUserIsFoundAfterWarmUp() {
+        warmUp(new UserKey(1, "first@mail.ru"));
+
+        directory.add(5, "fifth@mail.ru");
+
+        assertTrue(directory.mightExist(5));
+        assertTrue(directory.mightHaveEmail("FIFTH@mail.ru"));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    void removedUserIsNoLongerContained() {
+        warmUp(new UserKey(1, "first@mail.ru"));
+
+        directory.remove(1);
+
+        assertFalse(directory.containsUser(1));
+        assertFalse(directory.mightExist(1));
+    }
+
+    private void warmUp(UserKey... keys) {
+        when(userRepository.findKeysByIdGreaterThan(anyLong(), any(Limit.class))).thenReturn(List.of(keys));
+        directory.warmUp();
+        verify(userRepository).findKeysByIdGreaterThan(anyLong(), any(Limit.class));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.shareit.user;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.exception.DoubleEmailException;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = ShareItApp.class,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserServiceImplTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserDirectory userDirectory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void onlyEmailConstraintIsReportedAsDuplicateEmail() {
+        userService.addUser(new UserDto(0, "Первый", "same@mail.ru"));
+
+        assertThrows(DoubleEmailException.class,
+                () -> userService.addUser(new UserDto(0, "Второй", "same@mail.ru")));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userService.addUser(new UserDto(0, "И".repeat(41), "long-name@mail.ru")));
+    }
+
+    @Test
+    void addedUserIsRegisteredInDirectoryOnlyAfterCommit() {
+        long id = transactionTemplate.execute(status -> {
+            long userId = userService.addUser(new UserDto(0, "Новый", "directory@mail.ru")).getId();
+            assertFalse(userDirectory.containsUser(userId));
+            return userId;
+        });
+
+        assertTrue(userDirectory.containsUser(id));
+    }
+
+    @Test
+    void missingUserIsRejectedByDirectoryWithoutStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertTrue(userDirectory.isReady());
+        statistics.clear();
+
+        assertFalse(userDirectory.mightExist(Integer.MAX_VALUE - 1));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+}
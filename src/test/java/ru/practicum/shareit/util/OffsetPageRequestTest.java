@@ -0,0 +1,32 @@
+package ru.practicum.shareit.util;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.exception.BadRequestException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffsetPageRequestTest {
+
+    @Test
+    void offsetIsTakenFromRequestNotFromPageNumber() {
+        OffsetPageRequest page = OffsetPageRequest.of(25, 10);
+
+        assertEquals(25, page.getOffset());
+        assertEquals(10, page.getPageSize());
+    }
+
+    @Test
+    void sizeIsLimited() {
+        assertEquals(OffsetPageRequest.MAX_PAGE_SIZE,
+                OffsetPageRequest.of(0, OffsetPageRequest.MAX_PAGE_SIZE).getPageSize());
+        assertThrows(BadRequestException.class, () -> OffsetPageRequest.of(0, OffsetPageRequest.MAX_PAGE_SIZE + 1));
+        assertThrows(BadRequestException.class, () -> OffsetPageRequest.of(0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void negativeOffsetAndEmptyPageAreRejected() {
+        assertThrows(BadRequestException.class, () -> OffsetPageRequest.of(-1, 10));
+        assertThrows(BadRequestException.class, () -> OffsetPageRequest.of(0, 0));
+    }
+}